@@ -9,6 +9,15 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 import static java.util.stream.Collectors.toSet;
@@ -34,64 +43,588 @@ public class ACOPlanner {
     List<Pedido> pedidos;
     List<Bloqueo> bloqueos;
     Map<String, Map<String, String>> averiasPorTurno;
-    List<Camion> flota;
-    double[][] feromonas;
-    int N;
+    // Datos de partida ya leídos: reset() vuelve a ellos sin releer ficheros
+    private List<Pedido> pedidosBase;
+    private List<Bloqueo> bloqueosBase;
+    private Map<String, Map<String, String>> averiasBase;
+    private LineaTiempoPedidos ingesta;        // ingesta de pedidosBase, reutilizable tras reset()
+    private double capacidadIngesta;           // capacidad máxima de la flota con que se hizo
+    RegistroFlota registroFlota;
+    List<Camion> flota;   // camiones del registro, en orden de índice
     final int ITERACIONES = 50;
     final int HORMIGAS = 10;
     final double ALPHA = 1, BETA = 2, RHO = 0.1, Q = 1000;
-    List<Tanque> tanquesIntermedios = new ArrayList<>();
-    final int depositoX = 12, depositoY = 8;
-    Set<String> camionesInhabilitados = new HashSet<>();
-    Set<String> averiasAplicadas = new HashSet<>();
+    /** Coste (en galones equivalentes) de dejar un pedido sin asignar: prima servir más pedidos */
+    static final double PENAL_NO_ASIGNADO = 1000;
+    Instalaciones instalaciones;   // plantas y tanques intermedios
+    CalendarioAverias calendarioAverias;   // averías compiladas contra los índices de la flota
     GridVisualizerGUI visualizador;
     private List<EntregaEvent> eventosEntrega = new ArrayList<>();
+    // Fin de los tramos de retorno, por minuto y orden en la flota
+    private final PriorityQueue<LlegadaEvent> llegadas = new PriorityQueue<>(
+            Comparator.comparingInt((LlegadaEvent e) -> e.time).thenComparingInt(e -> e.orden));
+    private int relojMovimiento = -1;   // último minuto cuyos pasos ya dieron los camiones
+    // Detección de cambios: versiones de flota, pedidos y calendario de eventos. Mientras no
+    // cambien ni venza un umbral de tiempo (revisarEn), los pasos 4 y 5 no pueden hacer nada nuevo.
+    private int versionFlota, versionPedidos, versionCalendario;
+    private int versionFlotaVista = -1, versionPedidosVista = -1, versionCalendarioVista = -1;
+    private int revisarEn = Integer.MIN_VALUE;
     private int currentTime;
     private int maxTime;
-    private String turnoAnterior = "";
-    private Map<Integer,List<Pedido>> pedidosPorTiempo; // inicialízalo en el constructor o en reset()
+    private int colapsoEn = -1;               // minuto del colapso, -1 si no lo hubo
+    private final PrediccionColapso prediccionColapso = new PrediccionColapso();
+    private PrintStream salida = System.out;  // registro de eventos; una bifurcación no escribe
+    private final Aleatorio azar = new Aleatorio(System.nanoTime());   // ruleta de las hormigas
+    private boolean esBifurcacion = false;
+    // Puntos de control periódicos: cada cuántos minutos y prefijo del fichero (0 = ninguno)
+    private int puntoControlCada = 0;
+    private String prefijoPuntoControl;
+    private LineaTiempoPedidos lineaTiempo;   // la crea prepararPedidos(); null tras reset()
+    private final MetricasPlanificador metricas = new MetricasPlanificador();
+    private final VigiaVencimientos vigia = new VigiaVencimientos();
+    private final IndicePedidos indicePedidos = new IndicePedidos();
+    private final ColaAdmision colaAdmision = new ColaAdmision();
+    private final CachePlanes cachePlanes = new CachePlanes(CachePlanes.CAPACIDAD_POR_DEFECTO);
+    private boolean replanDiferido = false;   // quedaron pedidos fuera de la última admisión
+    // Coalescencia de disparos: los que caen dentro de la ventana se agrupan en una sola replanificación
+    private int ventanaCoalescencia = 30;       // min
+    private int umbralHolguraCoalescencia = 120; // min: por debajo se replanifica sin esperar
+    private int disparoPendienteDesde = -1;     // minuto del primer disparo aún no atendido
+    private boolean forzarReplan = false;       // hay partes obsoletas de un plan que replanificar ya
+    // Replanificación asíncrona: el ACO corre en un hilo aparte mientras el reloj avanza
+    private boolean planificacionAsincrona = false;
+    private ExecutorService ejecutorPlanificador;
+    private PlanAsincrono planEnCurso;
+    private int generacion;                     // simulación en curso; sube con cada reinicio
+    /** Espera máxima (ms) por minuto a un plan que ya superó la ventana de coalescencia */
+    static final long ESPERA_PLAN_MS = 20;
+    // Descomposición por regiones: 1 = una sola colonia para todo el problema
+    private int regionesPlanificacion = 1;
+    private ExecutorService ejecutorRegiones;
+    // Una tabla de transposición por hilo: el ACO puede ejecutarse fuera del hilo de simulación
+    private final ThreadLocal<TablaTransposicion> tablasTransposicion =
+            ThreadLocal.withInitial(() -> new TablaTransposicion(TablaTransposicion.CAPACIDAD_POR_DEFECTO));
 
     public ACOPlanner(List<Pedido> pedidos, List<Bloqueo> bloqueos, Map<String, Map<String, String>> averiasPorTurno) {
-        this.pedidos = pedidos;
-        this.bloqueos = bloqueos;
-        this.averiasPorTurno = averiasPorTurno;
+        this.pedidosBase = Collections.unmodifiableList(new ArrayList<>(pedidos));
+        this.bloqueosBase = Collections.unmodifiableList(new ArrayList<>(bloqueos));
+        this.averiasBase = copiarAverias(averiasPorTurno);
+        this.pedidos = pedidosBase;
+        this.bloqueos = bloqueosBase;
+        this.averiasPorTurno = copiarAverias(averiasBase);
+        cargarInstalaciones();
         this.flota = inicializarFlota();
-        this.N = pedidos.size();
-        this.feromonas = new double[N][N];
-        for (double[] row : feromonas) Arrays.fill(row, 1.0);
+        compilarAverias();
+        indexarPedidos();
         this.visualizador = new GridVisualizerGUI(70, 50);
-        // Capacidades y ubicaciones de los dos tanques intermedios
-        tanquesIntermedios.add(new Tanque(30, 15, 160));
-        tanquesIntermedios.add(new Tanque(50, 40, 160));
     }
+    /**
+     * Copia de trabajo para {@link #bifurcar}. Lo que no cambia durante la simulación se
+     * comparte (bloqueos, arrays de la línea de tiempo, mapas de época, índices por id); del resto solo se copia lo vivo: camiones, pedidos liberados sin entregar,
+     * eventos pendientes, libro de los tanques y calendario de averías.
+     */
+    private ACOPlanner(ACOPlanner base) {
+        this.relojMovimiento = base.relojMovimiento;
+        this.currentTime = base.currentTime;
+        this.maxTime = base.maxTime;
+        this.colapsoEn = base.colapsoEn;
+        this.salida = new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) { }
+        });
+        this.esBifurcacion = true;
+        azar.setEstado(base.azar.getEstado());   // mismo azar: solo difiere el escenario
+        this.bloqueos = base.bloqueos;
+        this.averiasPorTurno = copiarAverias(base.averiasPorTurno);
+
+        // Pedidos: copia de los liberados sin entregar; los demás, al pedirlos (ver copiaDe)
+        Map<Pedido, Pedido> copias = new IdentityHashMap<>();
+        UnaryOperator<Pedido> copiaDe = p -> copias.computeIfAbsent(p, Pedido::copia);
+        this.pedidos = new ArrayList<>();
+        for (Pedido p : base.indicePedidos.liberados()) pedidos.add(copiaDe.apply(p));
+        indexarPedidos();
+        this.lineaTiempo = base.lineaTiempo.bifurcar();
+        colaAdmision.copiarDe(base.colaAdmision, copiaDe);
+        prediccionColapso.copiarDe(base.prediccionColapso);
+
+        // Instalaciones y flota: las reservas de tanque de cada camión pasan a las copias
+        Map<Tanque.Reserva, Tanque.Reserva> reservas = new IdentityHashMap<>();
+        this.instalaciones = base.instalaciones.bifurcar(reservas);
+        this.registroFlota = base.registroFlota.bifurcar(c -> {
+            Camion copia = c.bifurcar(() -> relojMovimiento);
+            copia.getRutaPendiente().replaceAll(copiaDe);
+            if (copia.reservaTanque != null) copia.reservaTanque = reservas.get(copia.reservaTanque);
+            return copia;
+        });
+        this.flota = registroFlota.getCamiones();
+        this.calendarioAverias = base.calendarioAverias.bifurcar(registroFlota);
+        calendarioAverias.salida = salida;
+        for (EntregaEvent ev : base.eventosEntrega) {
+            eventosEntrega.add(new EntregaEvent(ev.time, flota.get(ev.camion.getIndice()), copiaDe.apply(ev.pedido)));
+        }
+        for (LlegadaEvent ev : base.llegadas) {
+            llegadas.add(new LlegadaEvent(ev.time, flota.get(ev.camion.getIndice()), ev.tramo, ev.orden));
+        }
+
+        // Planificador: mismas versiones y umbrales; siempre síncrono y sin visualizador
+        this.versionFlota = base.versionFlota;
+        this.versionPedidos = base.versionPedidos;
+        this.versionCalendario = base.versionCalendario;
+        this.versionFlotaVista = base.versionFlotaVista;
+        this.versionPedidosVista = base.versionPedidosVista;
+        this.versionCalendarioVista = base.versionCalendarioVista;
+        this.revisarEn = base.revisarEn;
+        this.replanDiferido = base.replanDiferido;
+        this.ventanaCoalescencia = base.ventanaCoalescencia;
+        this.umbralHolguraCoalescencia = base.umbralHolguraCoalescencia;
+        this.disparoPendienteDesde = base.disparoPendienteDesde;
+        // el plan asíncrono en curso es de la original: la copia replanifica esos pedidos ya
+        this.forzarReplan = base.forzarReplan || base.planEnCurso != null;
+        this.regionesPlanificacion = base.regionesPlanificacion;
+    }
+
+    /**
+     * Bifurca la simulación en el minuto actual (entre dos {@link #stepOneMinute}) para
+     * explorar un escenario hipotético: una avería ({@link #agregarAveria}), otros bloqueos
+     * ({@link #setBloqueos}), ... sin tocar esta simulación. El coste es proporcional al estado
+     * vivo (flota, pedidos liberados sin entregar, eventos pendientes), no al total de pedidos
+     * ni a la historia de los camiones, y cada bifurcación puede avanzar en su propio hilo
+     * ({@link #avanzarHasta}) mientras la original sigue.
+     *
+     * La bifurcación planifica de forma síncrona, no escribe eventos y no tiene visualizador.
+     * Sus pedidos son copias: se recorren con {@link #getIndicePedidos}.
+     */
+    public ACOPlanner bifurcar() {
+        if (lineaTiempo == null) prepararPedidos();
+        return new ACOPlanner(this);
+    }
+
+    /**
+     * Avanza minuto a minuto hasta tFin (exclusivo) o hasta el colapso, y devuelve el minuto
+     * alcanzado. Pensado para bifurcaciones; amplía el tiempo máximo si hace falta.
+     */
+    public int avanzarHasta(int tFin) {
+        maxTime = Math.max(maxTime, tFin);
+        while (currentTime < tFin && colapsoEn < 0 && !prediccionColapso.debeAbortar()) stepOneMinute();
+        return currentTime;
+    }
+
+    /** Minuto del colapso (primer pedido vencido), o -1 si no lo hubo. */
+    public int getColapsoEn() {
+        return colapsoEn;
+    }
+
+    /**
+     * Con true, la simulación se detiene en la replanificación que predice el colapso (ver
+     * {@link PrediccionColapso}) en vez de seguir hasta verlo; para barridos de parámetros.
+     */
+    public void setAbortarSiColapsoPrevisto(boolean abortar) {
+        prediccionColapso.setAbortar(abortar);
+    }
+
+    /** Minuto del colapso previsto (límite + 1 del pedido inalcanzable), o -1 si no se predijo. */
+    public int getColapsoPrevistoEn() {
+        return prediccionColapso.getPrevistoEn();
+    }
+
+    /** Minuto de la replanificación que predijo el colapso, o -1. */
+    public int getColapsoDetectadoEn() {
+        return prediccionColapso.getDetectadoEn();
+    }
+
+    /** La simulación se detuvo por colapso previsto ({@link #setAbortarSiColapsoPrevisto}). */
+    public boolean isAbortada() {
+        return prediccionColapso.debeAbortar();
+    }
+
+    public int getTiempoActual() {
+        return currentTime;
+    }
+
+    /** Destino de los mensajes de la simulación (por defecto la salida estándar). */
+    public void setSalida(PrintStream salida) {
+        this.salida = salida;
+        calendarioAverias.salida = salida;
+    }
+
+    /** Sustituye los bloqueos (p.ej. un escenario con un bloqueo más largo) y rehace sus mapas. */
+    public void setBloqueos(List<Bloqueo> bloqueos) {
+        this.bloqueos = bloqueos;
+        instalaciones.usarBloqueos(bloqueos);
+        versionFlota++;
+    }
+
+    /** Fija la semilla de la ruleta de las hormigas, para repetir una simulación. */
+    public void setSemilla(long semilla) {
+        azar.setEstado(semilla);
+    }
+
+    /**
+     * Escribe un punto de control cada {@code cadaMinutos} minutos simulados en
+     * {@code prefijo + minuto + ".bin"}, con los dos simuladores. 0 = ninguno.
+     */
+    public void setPuntosControl(int cadaMinutos, String prefijo) {
+        this.puntoControlCada = Math.max(0, cadaMinutos);
+        this.prefijoPuntoControl = prefijo;
+    }
+
+    /**
+     * Guarda el estado completo entre dos minutos en un fichero binario: reloj, versiones y
+     * umbrales, pedidos con sus marcas y su orden en el índice, línea de tiempo, bloqueos,
+     * averías, tanques con sus reservas, flota con rutas e historial, calendario de averías,
+     * eventos pendientes, cola de admisión, caché de planes y estado del azar. Las feromonas
+     * no: cada replanificación parte de las suyas, y lo que se arrastra entre replanificaciones
+     * es la caché de planes. Un plan asíncrono en curso no se guarda: al restaurar se replanifica.
+     */
+    public void guardarPuntoControl(String archivo) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(archivo)))) {
+            escribirEstado(out);
+        }
+    }
+
+    /**
+     * Simulación restaurada de un punto de control, lista para seguir con
+     * {@link #stepOneMinute} o {@link #avanzarHasta}. No lee los ficheros de datos ni tiene visualizador.
+     */
+    public static ACOPlanner restaurarPuntoControl(String archivo) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(archivo)))) {
+            return new ACOPlanner(in);
+        }
+    }
+
+    private static final int MAGIA_PUNTO_CONTROL = 0x41434F50;   // "ACOP"
+    private static final int VERSION_PUNTO_CONTROL = 8;
+
+    private void escribirEstado(DataOutput out) throws IOException {
+        if (esBifurcacion) throw new IllegalStateException("Una bifurcación no tiene punto de control");
+        if (lineaTiempo == null) prepararPedidos();
+        out.writeInt(MAGIA_PUNTO_CONTROL);
+        out.writeInt(VERSION_PUNTO_CONTROL);
+
+        // Reloj, versiones y planificador
+        out.writeInt(currentTime);
+        out.writeInt(maxTime);
+        out.writeInt(colapsoEn);
+        out.writeInt(relojMovimiento);
+        out.writeInt(versionFlota);
+        out.writeInt(versionPedidos);
+        out.writeInt(versionCalendario);
+        out.writeInt(versionFlotaVista);
+        out.writeInt(versionPedidosVista);
+        out.writeInt(versionCalendarioVista);
+        out.writeInt(revisarEn);
+        out.writeBoolean(replanDiferido);
+        out.writeInt(ventanaCoalescencia);
+        out.writeInt(umbralHolguraCoalescencia);
+        out.writeInt(disparoPendienteDesde);
+        out.writeBoolean(forzarReplan || planEnCurso != null);
+        out.writeBoolean(planificacionAsincrona);
+        out.writeInt(regionesPlanificacion);
+        out.writeLong(azar.getEstado());
+
+        // Pedidos: datos, marcas y orden dentro de cada estado del índice
+        Map<Pedido, Integer> posicion = new IdentityHashMap<>();
+        out.writeInt(pedidos.size());
+        for (Pedido p : pedidos) {
+            posicion.put(p, posicion.size());
+            out.writeInt(p.id);
+            out.writeInt(p.tiempoCreacion);
+            out.writeInt(p.x);
+            out.writeInt(p.y);
+            out.writeLong(p.volumen);
+            out.writeInt(p.tiempoLimite);
+            out.writeBoolean(p.cliente != null);
+            if (p.cliente != null) out.writeUTF(p.cliente);
+            out.writeByte((p.atendido ? 1 : 0) | (p.descartado ? 2 : 0) | (p.programado ? 4 : 0) | (p.liberado ? 8 : 0));
+        }
+        ToIntFunction<Pedido> ref = p -> {
+            Integer i = posicion.get(p);
+            if (i == null) throw new IllegalStateException("Pedido " + p.id + " fuera de la lista de pedidos");
+            return i;
+        };
+        List<Pedido> enIndice = new ArrayList<>();
+        for (Pedido p : indicePedidos.en(EstadoPedido.values())) enIndice.add(p);
+        out.writeInt(enIndice.size());
+        for (Pedido p : enIndice) out.writeInt(ref.applyAsInt(p));
+        lineaTiempo.escribir(out, ref);
+
+        // Escenario: bloqueos y averías por turno
+        out.writeInt(bloqueos.size());
+        for (Bloqueo b : bloqueos) {
+            out.writeInt(b.getStartMin());
+            out.writeInt(b.getEndMin());
+            out.writeInt(b.getNodes().size());
+            for (Point p : b.getNodes()) {
+                out.writeInt(p.x);
+                out.writeInt(p.y);
+            }
+        }
+        out.writeInt(averiasPorTurno.size());
+        for (Map.Entry<String, Map<String, String>> turno : averiasPorTurno.entrySet()) {
+            out.writeUTF(turno.getKey());
+            out.writeInt(turno.getValue().size());
+            for (Map.Entry<String, String> a : turno.getValue().entrySet()) {
+                out.writeUTF(a.getKey());
+                out.writeUTF(a.getValue());
+            }
+        }
+
+        // Instalaciones y flota; la reserva de cada camión es (tanque, posición entre sus pendientes)
+        instalaciones.escribir(out);
+        out.writeInt(flota.size());
+        for (Camion c : flota) {
+            c.escribir(out, ref);
+            int tanque = c.reservaTanque == null ? -1 : instalaciones.getTanques().indexOf(c.reservaTanque.getTanque());
+            out.writeInt(tanque);
+            if (tanque >= 0) out.writeInt(c.reservaTanque.getTanque().reservasPendientes().indexOf(c.reservaTanque));
+        }
+        calendarioAverias.escribir(out);
+
+        // Eventos pendientes, cola de admisión y caché de planes
+        out.writeInt(eventosEntrega.size());
+        for (EntregaEvent ev : eventosEntrega) {
+            out.writeInt(ev.time);
+            out.writeInt(ev.camion.getIndice());
+            out.writeInt(ref.applyAsInt(ev.pedido));
+        }
+        out.writeInt(llegadas.size());
+        for (LlegadaEvent ev : llegadas) {
+            out.writeInt(ev.time);
+            out.writeInt(ev.camion.getIndice());
+            out.writeInt(ev.tramo);
+            out.writeInt(ev.orden);
+        }
+        colaAdmision.escribir(out, ref);
+        cachePlanes.escribir(out);
+        prediccionColapso.escribir(out);
+    }
+
+    /** Lee lo escrito por {@link #escribirEstado}. */
+    private ACOPlanner(DataInput in) throws IOException {
+        if (in.readInt() != MAGIA_PUNTO_CONTROL) throw new IOException("No es un punto de control del planificador");
+        int version = in.readInt();
+        if (version != VERSION_PUNTO_CONTROL) throw new IOException("Versión de punto de control no soportada: " + version);
+
+        currentTime = in.readInt();
+        maxTime = in.readInt();
+        colapsoEn = in.readInt();
+        relojMovimiento = in.readInt();
+        versionFlota = in.readInt();
+        versionPedidos = in.readInt();
+        versionCalendario = in.readInt();
+        versionFlotaVista = in.readInt();
+        versionPedidosVista = in.readInt();
+        versionCalendarioVista = in.readInt();
+        revisarEn = in.readInt();
+        replanDiferido = in.readBoolean();
+        ventanaCoalescencia = in.readInt();
+        umbralHolguraCoalescencia = in.readInt();
+        disparoPendienteDesde = in.readInt();
+        forzarReplan = in.readBoolean();
+        planificacionAsincrona = in.readBoolean();
+        regionesPlanificacion = in.readInt();
+        azar.setEstado(in.readLong());
+
+        int n = in.readInt();
+        pedidos = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Pedido p = Pedido.conVolumen(in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readLong(), in.readInt(),
+                    in.readBoolean() ? in.readUTF() : null);
+            int marcas = in.readByte();
+            p.atendido = (marcas & 1) != 0;
+            p.descartado = (marcas & 2) != 0;
+            p.programado = (marcas & 4) != 0;
+            p.liberado = (marcas & 8) != 0;
+            pedidos.add(p);
+        }
+        IntFunction<Pedido> pedido = pedidos::get;
+        List<Pedido> enIndice = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; i--) enIndice.add(pedido.apply(in.readInt()));
+        vigia.vigilar(pedidos);
+        indicePedidos.indexar(enIndice);
+        lineaTiempo = LineaTiempoPedidos.leer(in, pedidos, pedido);
+
+        bloqueos = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            int inicio = in.readInt(), fin = in.readInt();
+            List<Point> nodos = new ArrayList<>();
+            for (int k = in.readInt(); k > 0; k--) nodos.add(new Point(in.readInt(), in.readInt()));
+            bloqueos.add(new Bloqueo(inicio, fin, nodos));
+        }
+        averiasPorTurno = new HashMap<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            Map<String, String> turno = new HashMap<>();
+            averiasPorTurno.put(in.readUTF(), turno);
+            for (int k = in.readInt(); k > 0; k--) turno.put(in.readUTF(), in.readUTF());
+        }
+
+        instalaciones = Instalaciones.leer(in);
+        instalaciones.usarBloqueos(bloqueos);
+        List<Camion> camiones = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            Camion c = Camion.leer(in, pedido, () -> relojMovimiento);
+            int tanque = in.readInt();
+            if (tanque >= 0) c.reservaTanque = instalaciones.getTanques().get(tanque).reservasPendientes().get(in.readInt());
+            camiones.add(c);
+        }
+        registroFlota = RegistroFlota.de(camiones);
+        flota = registroFlota.getCamiones();
+        calendarioAverias = CalendarioAverias.leer(in, registroFlota);
+
+        for (int i = in.readInt(); i > 0; i--) {
+            eventosEntrega.add(new EntregaEvent(in.readInt(), flota.get(in.readInt()), pedido.apply(in.readInt())));
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            int time = in.readInt();
+            llegadas.add(new LlegadaEvent(time, flota.get(in.readInt()), in.readInt(), in.readInt()));
+        }
+        colaAdmision.leer(in, pedido);
+        cachePlanes.leer(in);
+        prediccionColapso.leer(in);
+
+        // Lo restaurado pasa a ser el punto de partida de reset()
+        pedidosBase = Collections.unmodifiableList(pedidos);
+        bloqueosBase = Collections.unmodifiableList(bloqueos);
+        averiasBase = copiarAverias(averiasPorTurno);
+        ingesta = lineaTiempo;
+        capacidadIngesta = capacidadMaxima();
+    }
+
+    /** Escribe el punto de control periódico tras el minuto t, si toca. */
+    private void puntoControlSiToca(int tiempoActual) {
+        if (puntoControlCada <= 0 || (tiempoActual + 1) % puntoControlCada != 0) return;
+        String archivo = prefijoPuntoControl + (tiempoActual + 1) + ".bin";
+        try {
+            guardarPuntoControl(archivo);
+        } catch (IOException e) {
+            salida.println("⚠️ No se pudo escribir el punto de control " + archivo + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Vuelve al inicio de la simulación sin releer ficheros: pedidos, bloqueos y averías
+     * vuelven a los datos de partida, los camiones y tanques se reinician en su sitio y la
+     * ingesta de pedidos se reutiliza (ver {@link #prepararPedidos}). Para releer los
+     * ficheros, {@link #recargarDatos}.
+     */
     public void reset() {
+        if (esBifurcacion) throw new IllegalStateException("Una bifurcación no se reinicia");
+        descartarPlanEnCurso();
         // 0) Reinicia el tiempo
         this.currentTime = 1440;
-        this.turnoAnterior = "";
-        this.pedidosPorTiempo = null;
+        this.colapsoEn = -1;
+        this.lineaTiempo = null;
         this.maxTime     = 1440 * 7;       // o el valor que quieras simular
 
-        // recarga datos
-        this.pedidos = cargarPedidos("pedidos.txt");
-        this.bloqueos = cargarBloqueos("bloqueos.txt");
-        this.averiasPorTurno = cargarAverias("averias.txt");
-
-        // reinicia flota y feromonas
-        this.flota = inicializarFlota();
-        this.N = pedidos.size();
-        this.feromonas = new double[N][N];
-        for (double[] row : feromonas) Arrays.fill(row, 1.0);
+        // vuelve a los datos de partida; las marcas de los pedidos se limpian con la ingesta
+        if (ingesta != null) ingesta.reiniciar();
+        this.pedidos = pedidosBase;
+        this.bloqueos = bloqueosBase;
+        this.averiasPorTurno = copiarAverias(averiasBase);
 
-        // reinicia tanques intermedios
-        tanquesIntermedios.clear();
-        tanquesIntermedios.add(new Tanque(30, 15, 160));
-        tanquesIntermedios.add(new Tanque(30, 15, 160));
-        // tanquesIntermedios.add(new Tanque(50, 40, 1600));
+        // reinicia instalaciones (tanques llenos) y flota en su sitio
+        instalaciones.reiniciar(bloqueos);
+        for (Camion c : flota) c.reset();
+        compilarAverias();
+        indexarPedidos();
 
         // limpia eventos y averías en curso
         eventosEntrega.clear();
-        camionesInhabilitados.clear();
-        averiasAplicadas.clear();
+        llegadas.clear();
+        relojMovimiento = -1;
+        metricas.reset();
+        colaAdmision.clear();
+        cachePlanes.clear();
+        prediccionColapso.reiniciar();
+        replanDiferido = false;
+        disparoPendienteDesde = -1;
+        forzarReplan = false;
+        versionFlotaVista = versionPedidosVista = versionCalendarioVista = -1;
+        revisarEn = Integer.MIN_VALUE;
+    }
+
+    /**
+     * Cancela el plan asíncrono en curso y espera a que el hilo planificador lo suelte: el
+     * ACO no atiende interrupciones, y una ejecución vieja seguiría escribiendo métricas y
+     * caché en la simulación nueva. La generación sube, así que nada de antes se aplica ya.
+     */
+    private void descartarPlanEnCurso() {
+        generacion++;
+        if (planEnCurso == null) return;
+        PlanAsincrono plan = planEnCurso;
+        planEnCurso = null;
+        plan.futuro.cancel(true);
+        for (Pedido p : plan.candidatos) p.enPlanificacion = false;
+        try {
+            // un solo hilo: cuando corre esta tarea vacía, el plan cancelado ya terminó
+            ejecutorPlanificador.submit(() -> { }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Vuelve a leer pedidos.txt, bloqueos.txt, averias.txt, instalaciones.txt y flota.txt
+     * como nuevos datos de partida y reinicia la simulación con ellos.
+     */
+    public void recargarDatos() {
+        descartarPlanEnCurso();
+        this.pedidosBase = Collections.unmodifiableList(cargarPedidos("pedidos.txt"));
+        this.bloqueosBase = Collections.unmodifiableList(cargarBloqueos("bloqueos.txt"));
+        this.averiasBase = cargarAverias("averias.txt");
+        this.bloqueos = bloqueosBase;
+        cargarInstalaciones();
+        this.flota = inicializarFlota();
+        this.ingesta = null;
+        reset();
+    }
+
+    /** Copia de las averías por turno (turno → camión → tipo) que se puede modificar sin tocar el original. */
+    private static Map<String, Map<String, String>> copiarAverias(Map<String, Map<String, String>> averias) {
+        Map<String, Map<String, String>> copia = new HashMap<>();
+        for (Map.Entry<String, Map<String, String>> turno : averias.entrySet()) {
+            copia.put(turno.getKey(), new HashMap<>(turno.getValue()));
+        }
+        return copia;
+    }
+
+    /**
+     * Activa la replanificación en segundo plano: el ACO trabaja sobre una copia del estado
+     * y su resultado se valida contra el estado real al llegar, unos minutos después.
+     */
+    public void setPlanificacionAsincrona(boolean asincrona) {
+        this.planificacionAsincrona = asincrona;
+    }
+
+    /**
+     * Número máximo de regiones en que se parte cada replanificación grande; cada región
+     * se resuelve con su propio ACO en paralelo. Con 1 (por defecto) no se descompone.
+     */
+    public void setRegionesPlanificacion(int regiones) {
+        this.regionesPlanificacion = Math.max(1, regiones);
+    }
+
+    /**
+     * Ventana (min) en la que los disparos de replanificación (pedidos nuevos, averías,
+     * camiones recuperados) se agrupan en una sola ejecución. 0 = replanificar en cada disparo.
+     */
+    public void setVentanaCoalescencia(int minutos) {
+        this.ventanaCoalescencia = Math.max(0, minutos);
+    }
+
+    /**
+     * Latencia (ms) objetivo de cada replanificación: si se supera, el control de admisión
+     * reduce cuántos pedidos no urgentes entran en la siguiente. Por defecto 50 ms.
+     */
+    public void setLatenciaObjetivoAdmision(long ms) {
+        colaAdmision.setLatenciaObjetivo(ms);
+    }
+
+    /** Holgura (min) por debajo de la cual un candidato fuerza la replanificación sin esperar a la ventana. */
+    public void setUmbralHolguraCoalescencia(int minutos) {
+        this.umbralHolguraCoalescencia = minutos;
     }
     /**
      * Permite agregar manualmente una avería desde la GUI.
@@ -103,6 +636,13 @@ public class ACOPlanner {
         averiasPorTurno
                 .computeIfAbsent(turno, k -> new HashMap<>())
                 .put(camionId, tipo);
+        calendarioAverias.agregar(turno, camionId, tipo, currentTime);
+    }
+
+    /** Compila averiasPorTurno contra los índices del registro de flota. */
+    private void compilarAverias() {
+        calendarioAverias = new CalendarioAverias(averiasPorTurno, registroFlota);
+        calendarioAverias.salida = salida;
     }
 
     // ——————————————————————————————————————————
@@ -122,74 +662,76 @@ public class ACOPlanner {
     public List<Bloqueo> getBloqueos() {
         return Collections.unmodifiableList(bloqueos);
     }
+    /** Pedidos por estado del ciclo de vida, para recorrer solo los que interesan */
+    public IndicePedidos getIndicePedidos() {
+        return indicePedidos;
+    }
+
     /** Para dibujar los tanques intermedios en MapPanel */
     public List<Tanque> getTanquesIntermedios() {
-        return Collections.unmodifiableList(tanquesIntermedios);
+        return instalaciones.getTanques();
     }
-    public void simularDiaADia(int tMax) {
-        long tStart = System.currentTimeMillis();
-        String turnoAnterior = "";
-        Map<Integer, List<Pedido>> pedidosPorTiempo = new HashMap<>();
-        List<Double> holguras = new ArrayList<>();
-        // ————————————————————————————————————————————————————————————
-        // 0.a) Fraccionar pedidos mayores a la capacidad máxima de la flota
-        double maxCapacidad = flota.stream()
-                .mapToDouble(c -> c.getCapacidad())   // o .capacidad si es campo público
-                .max()
-                .orElse(0);
 
-        List<Pedido> listaParticionada = new ArrayList<>();
-        for (Pedido p : pedidos) {
-            if (p.volumen > maxCapacidad) {
-                // cuántos trozos de tamaño maxCapacidad necesitamos
-                int nPartes = (int) Math.ceil(p.volumen / maxCapacidad);
-                double restante = p.volumen;
-                for (int i = 1; i <= nPartes; i++) {
-                    double parte = Math.min(maxCapacidad, restante);
-                    Pedido sub = new Pedido(
-                            p.id * 100 + i,    // nuevo id
-                            p.tiempoCreacion,  // creación
-                            p.x,               // coordenada X
-                            p.y,               // coordenada Y
-                            parte,             // volumen de esta fracción
-                            p.tiempoLimite     // misma fecha límite
-                    );
-                    // (opcional) guarda referencia al original:
-                    //sub.parentId       = p.id;
+    /** Plantas y tanques, para dibujarlos en MapPanel */
+    public Instalaciones getInstalaciones() {
+        return instalaciones;
+    }
 
-                    listaParticionada.add(sub);
-                    restante -= maxCapacidad;
-                }
-            } else {
-                listaParticionada.add(p);
-            }
-        }
-        // reemplazamos la lista original por la particionada
-        pedidos = listaParticionada;
-        // Preprocesamiento: filtrar pedidos con <4h de anticipación
-        for (Pedido p : pedidos) {
-            if (p.tiempoLimite - p.tiempoCreacion < 4 * 60) {
-                p.descartado = true;
-                System.out.printf("⚠ Pedido #%d rechazado: menos de 4h de anticipación%n", p.id);
-            } else {
-                pedidosPorTiempo
-                        .computeIfAbsent(p.tiempoCreacion, k -> new ArrayList<>())
-                        .add(p);
+    /** Carga plantas y tanques de instalaciones.txt y prepara sus mapas con los bloqueos actuales. */
+    private void cargarInstalaciones() {
+        instalaciones = Instalaciones.cargar("instalaciones.txt");
+        instalaciones.usarBloqueos(bloqueos);
+    }
+
+    /**
+     * Ingesta de los pedidos actuales: fracciona los que no caben en el camión más grande,
+     * descarta los de menos de 4h de anticipación y construye la línea de tiempo de
+     * liberación que recorren los dos simuladores. La lista de pedidos pasa a ser la fraccionada.
+     */
+    public LineaTiempoPedidos prepararPedidos() {
+        double maxCapacidad = capacidadMaxima();
+        if (pedidos == pedidosBase && ingesta != null && capacidadIngesta == maxCapacidad) {
+            lineaTiempo = ingesta.reiniciar();   // mismos datos de partida: no se vuelve a ingerir
+        } else {
+            lineaTiempo = LineaTiempoPedidos.ingerir(pedidos, maxCapacidad);
+            if (pedidos == pedidosBase) {
+                ingesta = lineaTiempo;
+                capacidadIngesta = maxCapacidad;
             }
         }
+        setPedidos(lineaTiempo.getPedidos());
+        return lineaTiempo;
+    }
+
+    private double capacidadMaxima() {
+        return flota.stream()
+                .mapToDouble(Camion::getCapacidad)
+                .max()
+                .orElse(0);
+    }
+
+    /** Métricas acumuladas del planificador (reducción del problema, replanificaciones, ...) */
+    public MetricasPlanificador getMetricas() {
+        return metricas;
+    }
+    public void simularDiaADia(int tMax) {
+        long tStart = System.currentTimeMillis();
+        List<Double> holguras = new ArrayList<>();
+        // 0) Ingesta: fraccionar, filtrar por anticipación y ordenar por minuto de creación
+        prepararPedidos();
 
         for (int t = 0; t <= tMax; t++) {
             int tiempoActual = t;
             boolean replanificar = false;
+            relojMovimiento = tiempoActual - 1;   // aún no se han dado los pasos de este minuto
             // recarga de tanques intermedios
             // al inicio de cada día (t%1440==0)
             if (t > 0 && t % 1440 == 0) {
-                for (Tanque tq : tanquesIntermedios) {
-                    tq.disponible = tq.capacidadTotal;
-                }
-                System.out.printf("🔁 t+%d: Tanques intermedios recargados a %.1f m³ cada uno%n",
-                        tiempoActual,
-                        tanquesIntermedios.get(0).capacidadTotal);
+                instalaciones.recargarTanques();
+                if (!instalaciones.getTanques().isEmpty())
+                    salida.printf("🔁 t+%d: Tanques intermedios recargados a %.1f m³ cada uno%n",
+                            tiempoActual,
+                            instalaciones.getTanques().get(0).getCapacidadTotal());
             }
 
             // 0) Procesar eventos de entrega programados para este minuto
@@ -197,21 +739,21 @@ public class ACOPlanner {
             while (itEv.hasNext()) {
                 EntregaEvent ev = itEv.next();
                 if (ev.time == tiempoActual) {
-                    System.out.println("▶▶▶ disparando eventoEntrega para Pedido "+ ev.pedido.id);
+                    salida.println("▶▶▶ disparando eventoEntrega para Pedido "+ ev.pedido.id);
                     // 1) Guardar capacidad previa
-                    double antes = ev.camion.getDisponible();
+                    long antes = ev.camion.getDisponibleFijo();
                     // 2) Actualizar posición y liberar al camión
                     ev.camion.setX(ev.pedido.x);
                     ev.camion.setY(ev.pedido.y);
                     ev.camion.setLibreEn(tiempoActual + 15);// 15 minutos de servicio tras descarga
                     // 3) Descontar volumen
-                    double disponibleAntes = ev.camion.getDisponible();
+                    long disponibleAntes = ev.camion.getDisponibleFijo();
                     if (disponibleAntes >= ev.pedido.volumen) {
-                        ev.camion.setDisponible(disponibleAntes - ev.pedido.volumen);
+                        ev.camion.setDisponibleFijo(disponibleAntes - ev.pedido.volumen);
                     } else {
-                        System.out.printf("⚠️ Pedido #%d *no* entregado con %s en t+%d: capacidad insuficiente (%.1f < %.1f)%n",
+                        salida.printf("⚠️ Pedido #%d *no* entregado con %s en t+%d: capacidad insuficiente (%.1f < %.1f)%n",
                                 ev.pedido.id, ev.camion.getId(), ev.time,
-                                disponibleAntes, ev.pedido.volumen);
+                                Volumen.aM3(disponibleAntes), ev.pedido.getVolumen());
                               // opcional: reenqueue el pedido o lanzar excepción según tu lógica
                     }
 
@@ -220,38 +762,38 @@ public class ACOPlanner {
                     double holguraSeg = ev.pedido.tiempoLimite - tiempoActual;
                     holguras.add(holguraSeg);
                     // 5) Log de entrega
-                    System.out.printf(
+                    salida.printf(
                             "✅ t+%d: Pedido #%d completado por Camión %s en (%d,%d); capacidad: %.1f→%.1f m³%n",
                             tiempoActual, ev.pedido.id, ev.camion.getId(),
                             ev.pedido.x, ev.pedido.y,
-                            antes, ev.camion.getDisponible()
+                            Volumen.aM3(antes), ev.camion.getDisponible()
                     );
                     itEv.remove();
+                    versionCalendario++; versionFlota++; versionPedidos++;
 
                     // 6) Iniciar retorno
-                    double falta = ev.camion.getCapacidad() - ev.camion.getDisponible();
+                    long falta = ev.camion.getCapacidadFijo() - ev.camion.getDisponibleFijo();
                     int sx = ev.camion.getX(), sy = ev.camion.getY();
 
-                    // 6.a) Distancia al depósito principal
-                    int dxPlant = depositoX, dyPlant = depositoY;
-                    int distMin = Math.abs(sx - dxPlant) + Math.abs(sy - dyPlant);
-                    Tanque mejor = null;
-
-                    // 6.b) Comprueba cada tanque intermedio con suficiente volumen
-                    for (Tanque tq : tanquesIntermedios) {
-                        if (tq.disponible >= falta) {
-                            int dist = Math.abs(sx - tq.x) + Math.abs(sy - tq.y);
-                            if (dist < distMin) {
-                                distMin = dist;
-                                mejor = tq;
-                            }
-                        }
+                    // 6.a) Tanque con stock o planta más cercanos, del mapa de la época de bloqueos actual.
+                    //      El volumen se reserva ya en el tanque; si otro plan se adelantó, se vuelve a elegir.
+                    int destino;
+                    Tanque mejor;
+                    Tanque.Reserva reserva = null;
+                    do {
+                        destino = instalaciones.elegirRetorno(sx, sy, falta, tiempoActual);
+                        mejor = instalaciones.tanque(destino);
+                    } while (mejor != null && (reserva = mejor.reservar(falta)) == null);
+                    int distMin = instalaciones.distancia(destino, sx, sy);
+                    if (mejor != null) {
+                        salida.printf("🔁 t+%d: Tanque (%d,%d) reservado %.1fm³ → ahora %.1f m³%n",
+                                tiempoActual, mejor.x, mejor.y, Volumen.aM3(falta), mejor.getDisponible());
                     }
 
                     // 6.c) Fija destino de retorno (tanque seleccionado o planta si mejor==null)
-                    int destX = (mejor != null ? mejor.x : dxPlant);
-                    int destY = (mejor != null ? mejor.y : dyPlant);
-                    ev.camion.reabastecerEnTanque = mejor;
+                    int destX = instalaciones.x(destino);
+                    int destY = instalaciones.y(destino);
+                    ev.camion.reservaTanque = reserva;
 
                     // 6.d) Marca el camión en modo retorno
                     ev.camion.setEnRetorno(true);
@@ -266,200 +808,497 @@ public class ACOPlanner {
                     List<Point> returnPath = buildManhattanPath(sx, sy, destX, destY, tiempoActual);
                     ev.camion.setRuta(returnPath);
                     ev.camion.appendToHistory(returnPath);
+                    programarLlegada(ev.camion);
 
-                    System.out.printf("⏱️ t+%d: Camión %s inicia retorno a %s (dist=%d)%n",
+                    salida.printf("⏱️ t+%d: Camión %s inicia retorno a %s (dist=%d)%n",
                             tiempoActual, ev.camion.getId(),
                             (mejor != null ? "tanque intermedio" : "planta principal"),
                             distMin);
 
                 }
             }
+            // Los camiones avanzan solos con el reloj: ya se dieron los pasos de este minuto
+            relojMovimiento = tiempoActual;
             // <<< aquí: reabastecimiento automático al llegar a planta >>>
-            for (Camion c : flota) {
-                // Si aún tiene pasos (ida o retorno), avanza un paso Manhattan
-                if (c.tienePasosPendientes()) {
-                    c.avanzarUnPaso();
-                    System.out.printf("→ Camión %s avanza a (%d,%d)%n", c.getId(), c.getX(), c.getY());
-                }
-                // Si acaba de completar todos los pasos y estaba en retorno, recarga
-                else if (c.getStatus() == Camion.TruckStatus.RETURNING) {
-                    // → Lógica de recarga en tanque o planta (idéntica a la tuya)
-                    double falta = c.getCapacidad() - c.getDisponible();
-                    Tanque tq = c.reabastecerEnTanque;
-                    if (tq != null) {
-                        tq.disponible -= falta;
-                        System.out.printf("🔄 t+%d: Camión %s llegó a tanque (%d,%d) y recargado a %.1f m³%n", tiempoActual, c.getId(), tq.x, tq.y, c.getCapacidad());
-                        System.out.printf("🔁      Tanque (%d,%d) quedó con %.1f m³%n", tq.x, tq.y, tq.disponible);
-                    } else {
-                        System.out.printf("🔄 t+%d: Camión %s llegó a planta (%d,%d) y recargado a %.1f m³%n", tiempoActual, c.getId(), depositoX, depositoY, c.getCapacidad());
-                    }
-                    c.setDisponible(c.getCapacidad());
-                    c.setCombustibleDisponible( c.getCapacidadCombustible() );
-                    c.setEnRetorno(false);
-                    c.reabastecerEnTanque = null;
-                    c.setStatus(Camion.TruckStatus.AVAILABLE);
-                    c.setLibreEn(tiempoActual + 15);
+            for (Camion c : llegadasDelMinuto(tiempoActual)) {
+                // → Recarga en tanque (consume la reserva hecha al salir) o en planta
+                Tanque.Reserva reserva = c.reservaTanque;
+                if (reserva != null) {
+                    Tanque tq = reserva.getTanque();
+                    tq.confirmar(reserva);
+                    salida.printf("🔄 t+%d: Camión %s llegó a tanque (%d,%d) y recargado a %.1f m³%n", tiempoActual, c.getId(), tq.x, tq.y, c.getCapacidad());
+                    salida.printf("🔁      Tanque (%d,%d) quedó con %.1f m³%n", tq.x, tq.y, tq.getDisponible());
+                } else {
+                    salida.printf("🔄 t+%d: Camión %s llegó a planta (%d,%d) y recargado a %.1f m³%n", tiempoActual, c.getId(), c.retDestX, c.retDestY, c.getCapacidad());
                 }
+                c.setDisponibleFijo(c.getCapacidadFijo());
+                c.setCombustibleFijo(c.getCapacidadCombustibleFijo());
+                c.setEnRetorno(false);
+                c.reservaTanque = null;
+                c.setStatus(Camion.TruckStatus.AVAILABLE);
+                c.setLibreEn(tiempoActual + 15);
+                versionCalendario++; versionFlota++;
             }
 
             // 1. Nuevo pedido
-            List<Pedido> nuevos = pedidosPorTiempo.getOrDefault(tiempoActual, Collections.emptyList());
-            for (Pedido p : nuevos) {
-                System.out.printf("🆕 t+%d: Pedido #%d recibido (destino=(%d,%d), vol=%.1fm³, límite t+%d)%n",
-                        tiempoActual, p.id, p.x, p.y, p.volumen, p.tiempoLimite);
+            int primerNuevo = lineaTiempo.liberarHasta(tiempoActual);
+            for (int i = primerNuevo; i < lineaTiempo.getCursor(); i++) {
+                Pedido p = lineaTiempo.get(i);
+                salida.printf("🆕 t+%d: Pedido #%d recibido (destino=(%d,%d), vol=%.1fm³, límite t+%d)%n",
+                        tiempoActual, p.id, p.x, p.y, p.getVolumen(), p.tiempoLimite);
+                indicePedidos.liberar(p);
+                vigia.agregar(p);
+                colaAdmision.agregar(p);
             }
-            if (!nuevos.isEmpty()) replanificar = true;
-
-            // 2. Vencimientos → colapso
-            for (Pedido p : pedidos) {
-                if (!p.atendido && !p.descartado && tiempoActual > p.tiempoLimite) {
-                    System.out.printf("💥 Colapso en t+%d, pedido %d incumplido%n", tiempoActual, p.id);
-                    return;
-                }
+            if (lineaTiempo.getCursor() > primerNuevo) { replanificar = true; versionPedidos++; }
+
+            // 2. Vencimientos → colapso (solo se mira la cabeza del vigilante de plazos)
+            if (vigia.hayVencidos(tiempoActual)) {
+                colapsoEn = tiempoActual;
+                salida.printf("💥 Colapso en t+%d, pedido %d incumplido%n", tiempoActual, vigia.primero().id);
+                informarPrediccion();
+                return;
             }
 
-            // 3. Averías
-            String turnoActual = turnoDeMinuto(tiempoActual);
-            if (!turnoActual.equals(turnoAnterior)) {
-                turnoAnterior = turnoActual;
-                averiasAplicadas.clear(); camionesInhabilitados.clear();
+            // 3. Averías: inicios y recuperaciones vencidos del calendario compilado
+            if (calendarioAverias.procesarHasta(tiempoActual)) { replanificar = true; versionFlota++; }
+
+            planificarMinuto(tiempoActual, replanificar);
+            currentTime = tiempoActual + 1;
+            puntoControlSiToca(tiempoActual);
+            if (prediccionColapso.debeAbortar()) return;
+
+            if (tiempoActual % 60 == 0 && visualizador != null)
+                visualizador.render(tiempoActual,
+                        indicePedidos.en(EstadoPedido.PENDIENTE, EstadoPedido.PROGRAMADO, EstadoPedido.ENTREGADO),
+                        flota, bloqueos, instalaciones.getPlantaPrincipal().x, instalaciones.getPlantaPrincipal().y);
+        }
+        long tEnd = System.currentTimeMillis();
+        long tiempoEjecucionMs = tEnd - tStart;
+
+        double holguraPromedioMin = holguras.stream()
+                .mapToDouble(Double::doubleValue)
+                .average()
+                .orElse(0.0) / 60.0;
+        double consumoTotal = flota.stream()
+                .mapToDouble(Camion::getConsumoAcumulado)
+                .sum();
+        salida.println("🏁 Reporte Final:");
+        salida.printf("• Tiempo de ejecución: %d ms%n", tiempoEjecucionMs);
+        salida.printf("• Holgura promedio: %.2f min%n", holguraPromedioMin);
+        salida.printf("• Consumo total: %.2f galones%n", consumoTotal);
+        metricas.imprimirReporte(salida);
+        informarPrediccion();
+        salida.printf("• Replanificaciones por día simulado: %.1f%n",
+                metricas.getReplanificaciones() / Math.max(1.0, tMax / 1440.0));
+
+        //reporteFinal();
+    }
+    /**
+     * Cota inferior de llegada de cada pedido sin programar (ver {@link PrediccionColapso}):
+     * si alguno ya no llega, avisa del colapso. Devuelve true si hay que abortar.
+     */
+    private boolean predecirColapso(int tiempoActual) {
+        if (prediccionColapso.evaluar(indicePedidos.en(EstadoPedido.PENDIENTE), flota, instalaciones, tiempoActual)) {
+            int llegada = prediccionColapso.getLlegadaMinima();
+            salida.printf("🔮 t+%d: Colapso previsto en t+%d: pedido %d inalcanzable (%s)%n",
+                    tiempoActual, prediccionColapso.getPrevistoEn(), prediccionColapso.getPedidoId(),
+                    llegada == Integer.MAX_VALUE ? "ningún camión con capacidad" : "llegada mínima t+" + llegada);
+            if (prediccionColapso.debeAbortar()) {
+                salida.printf("⛔ t+%d: Simulación abortada por colapso previsto%n", tiempoActual);
             }
-            Map<String, String> averiasTurno = averiasPorTurno.getOrDefault(turnoActual, Collections.emptyMap());
-            for (Map.Entry<String, String> entry : averiasTurno.entrySet()) {
-                String key = turnoActual + "_" + entry.getKey();
-                if (averiasAplicadas.contains(key)) continue;
-                Camion c = findCamion(entry.getKey());
-                if (c != null && c.getLibreEn() <= tiempoActual) {
-                    int penal = entry.getValue().equals("T1") ? 30 : entry.getValue().equals("T2") ? 60 : 90;
-                    c.setLibreEn(tiempoActual + penal);
-                    // c.setStatus(Camion.TruckStatus.WAITING);
-                    averiasAplicadas.add(key);
-                    camionesInhabilitados.add(c.getId());
-                    replanificar = true;
-                    System.out.printf("🚨 t+%d: Camión %s sufre avería tipo %s, inhabilitado por %d min%n",
-                            tiempoActual, c.getId(), entry.getValue(), penal);
-                }
+        }
+        return prediccionColapso.debeAbortar();
+    }
+
+    /** Colapso previsto frente al real, si se predijo alguno. */
+    private void informarPrediccion() {
+        if (prediccionColapso.getPrevistoEn() < 0) return;
+        salida.printf("• Colapso previsto: t+%d (detectado en t+%d); real: %s%n",
+                prediccionColapso.getPrevistoEn(), prediccionColapso.getDetectadoEn(),
+                colapsoEn >= 0 ? "t+" + colapsoEn : "no alcanzado");
+    }
+
+    /** Vuelve a indexar la lista de pedidos actual: vigilante de plazos e índice por estado. */
+    private void indexarPedidos() {
+        vigia.vigilar(pedidos);
+        indicePedidos.indexar(pedidos);
+    }
+
+    /** Programa la llegada del camión al final de su tramo de retorno recién asignado. */
+    private void programarLlegada(Camion c) {
+        llegadas.add(new LlegadaEvent(c.getFinTramo(), c, c.getTramo(), c.getIndice()));
+    }
+
+    /**
+     * Camiones que terminan este minuto su tramo de retorno. Las llegadas de tramos ya
+     * sustituidos (el camión recibió otro retorno) se descartan.
+     */
+    private List<Camion> llegadasDelMinuto(int tiempoActual) {
+        if (llegadas.isEmpty() || llegadas.peek().time > tiempoActual) return Collections.emptyList();
+        List<Camion> llegados = new ArrayList<>();
+        while (!llegadas.isEmpty() && llegadas.peek().time <= tiempoActual) {
+            LlegadaEvent ev = llegadas.poll();
+            if (ev.camion.getTramo() == ev.tramo
+                    && ev.camion.getStatus() == Camion.TruckStatus.RETURNING) {
+                llegados.add(ev.camion);
             }
-            // liberar camiones que se recuperaron de averias
-            Iterator<String> it = camionesInhabilitados.iterator();
-            while (it.hasNext()) {
-                Camion c = findCamion(it.next());
-                if (c != null && c.getLibreEn() <= tiempoActual) { it.remove(); replanificar = true; }
+        }
+        return llegados;
+    }
+
+    /**
+     * Pasos 4 y 5 de cada minuto, comunes a {@link #simularDiaADia} y {@link #stepOneMinute}:
+     * estado de la flota disponible, candidatos a reasignar y, si toca, replanificación.
+     */
+    private void planificarMinuto(int tiempoActual, boolean replanificar) {
+        // un plan asíncrono terminado se valida y aplica antes de mirar nada más
+        recogerPlanAsincrono(tiempoActual);
+        // los pedidos diferidos por el control de admisión fuerzan otra replanificación
+        replanificar |= replanDiferido || forzarReplan;
+        if (replanificar) {
+            metricas.registrarDisparo();
+            if (disparoPendienteDesde < 0) {
+                disparoPendienteDesde = tiempoActual;
+                revisarEn = Integer.MIN_VALUE;
             }
+        }
+        // Vía rápida: sin disparo pendiente no hay nada que replanificar; con uno esperando la
+        // ventana, si nada cambió y no vence ningún umbral de tiempo, el resultado sería el mismo
+        if (disparoPendienteDesde < 0
+                || (tiempoActual < revisarEn
+                    && versionFlota == versionFlotaVista
+                    && versionPedidos == versionPedidosVista
+                    && versionCalendario == versionCalendarioVista)) {
+            metricas.registrarMinutoOmitido();
+            if (prediccionColapso.tocaRevisar(tiempoActual)) predecirColapso(tiempoActual);
+            return;
+        }
+        metricas.registrarMinutoEvaluado();
+        if (predecirColapso(tiempoActual)) return;
+        versionFlotaVista = versionFlota;
+        versionPedidosVista = versionPedidos;
+        versionCalendarioVista = versionCalendario;
+        // próximo minuto en que el paso del tiempo puede cambiar candidatos, admisión o urgencia
+        revisarEn = Math.min(disparoPendienteDesde + ventanaCoalescencia,
+                colaAdmision.getPrimerLimite() - Math.max(umbralHolguraCoalescencia, ColaAdmision.HOLGURA_FORZADA));
+        // 4. Actualizar estado real de la flota, incluyendo DELIVERING para probar desvíos
+        List<CamionEstado> flotaEstado = flota.stream()
+                .filter(c -> c.getStatus() == Camion.TruckStatus.AVAILABLE)
+                .map(ACOPlanner::estadoDe)
+                .collect(Collectors.toList());
+        // 5. Replanificación VRP con ACO
+        // ——————————————————————————————
+        // 5.1) Mapa de entrega actual
+        Map<Pedido,Integer> entregaActual = new HashMap<>();
+        for (EntregaEvent ev : eventosEntrega) {
+            entregaActual.put(ev.pedido, ev.time);
+        }
+        // 5.2) Pedidos pendientes de atender (solo los NO programados aún), filtrados por el
+        //      control de admisión: los K más urgentes + todos los de holgura <= 60 min
+        List<Pedido> pendientes = colaAdmision.admitir(tiempoActual);
 
-            // 4. Actualizar estado real de la flota, incluyendo DELIVERING para probar desvíos
-            List<CamionEstado> flotaEstado = flota.stream()
-                    .filter(c -> c.getStatus() == Camion.TruckStatus.AVAILABLE)
-                    .map(c -> {
-                        CamionEstado est = new CamionEstado();
-                        est.id = c.getId();
-                        est.posX = c.getX();
-                        est.posY = c.getY();
-                        est.capacidadDisponible = c.getDisponible();
-                        est.tiempoLibre = c.getLibreEn();
-                        est.tara = c.getTara();
-                        est.combustibleDisponible = c.getCombustibleDisponible();
-                        return est;
-                    })
-                    .collect(Collectors.toList());
-            // 5. Replanificación VRP con ACO
-            // ——————————————————————————————
-            // 5.1) Mapa de entrega actual
-            Map<Pedido,Integer> entregaActual = new HashMap<>();
-            for (EntregaEvent ev : eventosEntrega) {
-                entregaActual.put(ev.pedido, ev.time);
+
+        // 5.3) Identificar candidatos a reasignar
+        // DESPUÉS: forzamos que TODOS los pendientes sean candidatos
+        List<Pedido> candidatos = new ArrayList<>();
+
+        for (Pedido p : pendientes) {
+            // 🔴 Nuevo: forzar inclusión si faltan menos de 60 minutos
+            if (tiempoActual + 60 >= p.tiempoLimite) {
+                candidatos.add(p);
+                continue;
             }
-            // 5.2) Pedidos pendientes de atender (solo los NO programados aún)
-            List<Pedido> pendientes = pedidos.stream()
-                    .filter(p -> !p.atendido
-                            && !p.descartado
-                            && !p.programado   // ← filtramos los que ya fueron asignados
-                            && p.tiempoCreacion <= tiempoActual)
-                    .collect(Collectors.toList());
-
-
-            // 5.3) Identificar candidatos a reasignar
-            // DESPUÉS: forzamos que TODOS los pendientes sean candidatos
-            List<Pedido> candidatos = new ArrayList<>();
-
-            for (Pedido p : pendientes) {
-                // 🔴 Nuevo: forzar inclusión si faltan menos de 60 minutos
-                if (tiempoActual + 60 >= p.tiempoLimite) {
-                    candidatos.add(p);
-                    continue;
+            Integer tPrev = entregaActual.get(p);
+            if (tPrev == null) {
+                // nunca asignado → candidato
+                candidatos.add(p);
+            } else {
+                // ya asignado: ¿algún otro camión podría hacerlo antes?
+                int mejorAlt = tPrev;
+                for (CamionEstado est : flotaEstado) {
+                    if (est.capacidadDisponible < p.volumen) continue;
+                    int dt = Math.abs(est.posX - p.x) + Math.abs(est.posY - p.y);
+                    int llegada = tiempoActual + dt;
+                    if (llegada < mejorAlt) mejorAlt = llegada;
                 }
-                Integer tPrev = entregaActual.get(p);
-                if (tPrev == null) {
-                    // nunca asignado → candidato
+                if (mejorAlt < tPrev) {
                     candidatos.add(p);
-                } else {
-                    // ya asignado: ¿algún otro camión podría hacerlo antes?
-                    int mejorAlt = tPrev;
-                    for (CamionEstado est : flotaEstado) {
-                        if (est.capacidadDisponible < p.volumen) continue;
-                        int dt = Math.abs(est.posX - p.x) + Math.abs(est.posY - p.y);
-                        int llegada = tiempoActual + dt;
-                        if (llegada < mejorAlt) mejorAlt = llegada;
-                    }
-                    if (mejorAlt < tPrev) {
-                        candidatos.add(p);
-                    }
                 }
+                // la alternativa deja de ganar, o la entrega queda a 1 min, según pasa el tiempo
+                revisarEn = Math.min(revisarEn, tPrev - Math.max(1, mejorAlt - tiempoActual));
+            }
+        }
+        // ←――――――――――――――――――――――――――――――――
+        // NUEVO: excluir pedidos con entrega próxima (<=1 min)
+        candidatos.removeIf(p -> {
+            Integer entregaMin = entregaActual.get(p);
+            return entregaMin != null && entregaMin - tiempoActual <= 1;
+        });
+        // ―――――――――――――――――――――――――――――――――→
+
+        // 5.4) Si hay candidatos y toca replanificar, solo ellos. Los disparos se agrupan
+        //      hasta cumplir la ventana, salvo que algún candidato ande corto de holgura o
+        //      queden pedidos diferidos por la admisión, que no esperan a la ventana.
+        if (candidatos.isEmpty()) disparoPendienteDesde = -1;
+        boolean ventanaCumplida = disparoPendienteDesde >= 0
+                && (forzarReplan || replanDiferido || tiempoActual - disparoPendienteDesde >= ventanaCoalescencia);
+        boolean urgente = false;
+        if (disparoPendienteDesde >= 0 && !ventanaCumplida) {
+            for (Pedido p : candidatos) {
+                if (p.tiempoLimite - tiempoActual < umbralHolguraCoalescencia) { urgente = true; break; }
+            }
+        }
+        if ((ventanaCumplida || urgente) && planEnCurso != null) {
+            // ya hay un plan en el hilo planificador: el disparo espera a que llegue
+        } else if (ventanaCumplida || urgente) {
+            disparoPendienteDesde = -1;
+            forzarReplan = false;
+            salida.printf("⏲️ t+%d: Replanificando, candidatos = %s%n",
+                    tiempoActual, candidatos.stream().map(p->p.id).collect(Collectors.toList()));
+            // ——— A ———  cancelar cualquier eventoEntrega pendiente de esos candidatos
+            // eventosEntrega.removeIf(ev -> candidatos.contains(ev.pedido));
+            Set<Integer> idsCandidatos = candidatos.stream().map(p->p.id).collect(toSet());
+            if (eventosEntrega.removeIf(ev -> idsCandidatos.contains(ev.pedido.id))) versionCalendario++;
+            // ——— B ———  desprogramar los pedidos para que puedan reasignarse
+            for (Pedido p : candidatos) p.setProgramado(false);
+            if (planificacionAsincrona) {
+                lanzarPlanAsincrono(tiempoActual, candidatos, flotaEstado);
+            } else {
+                long t0 = System.nanoTime();
+                List<Ruta> rutas = planificar(candidatos, flotaEstado, tiempoActual);
+                cerrarReplanificacion(tiempoActual, candidatos, rutas, (System.nanoTime() - t0) / 1_000_000);
             }
-            // ←――――――――――――――――――――――――――――――――
-            // NUEVO: excluir pedidos con entrega próxima (<=1 min)
-            candidatos.removeIf(p -> {
-                Integer entregaMin = entregaActual.get(p);
-                return entregaMin != null && entregaMin - tiempoActual <= 1;
+        }
+    }
+
+    /**
+     * Último tramo de una replanificación, síncrona o asíncrona: ajusta el control de
+     * admisión con la latencia del solver y aplica las rutas al estado real.
+     */
+    private void cerrarReplanificacion(int tiempoActual, List<Pedido> candidatos, List<Ruta> rutas, long latenciaMs) {
+        colaAdmision.registrarLatencia(latenciaMs);
+        replanDiferido = colaAdmision.hayDiferidos();
+        metricas.registrarAdmision(candidatos.size(), replanDiferido, colaAdmision.getK());
+        if (replanDiferido) {
+            salida.printf("📥 t+%d: Admisión limitada a K=%d, pedidos diferidos a la siguiente replanificación%n",
+                    tiempoActual, colaAdmision.getK());
+        }
+        salida.printf("    → Rutas devueltas para %s%n",
+                rutas.stream()
+                        .flatMap(r->r.pedidos.stream())
+                        .map(idx->candidatos.get(idx).id)
+                        .collect(Collectors.toList()));
+        aplicarRutas(tiempoActual, rutas, candidatos);
+        versionCalendario++; versionFlota++; versionPedidos++;
+    }
+
+    /** Replanificación enviada al hilo planificador y aún sin aplicar. */
+    private static class PlanAsincrono {
+        final List<Pedido> candidatos;
+        final int tiempoEnvio;
+        final int generacion;
+        Future<List<Ruta>> futuro;
+        volatile long latenciaMs;
+
+        PlanAsincrono(List<Pedido> candidatos, int tiempoEnvio, int generacion) {
+            this.candidatos = candidatos;
+            this.tiempoEnvio = tiempoEnvio;
+            this.generacion = generacion;
+        }
+    }
+
+    private ExecutorService ejecutorPlanificador() {
+        if (ejecutorPlanificador == null) {
+            ejecutorPlanificador = Executors.newSingleThreadExecutor(r -> {
+                Thread hilo = new Thread(r, "planificador-aco");
+                hilo.setDaemon(true);
+                return hilo;
             });
-            // ―――――――――――――――――――――――――――――――――→
-
-            // 5.4) Si hay candidatos y toca replanificar, solo ellos
-            if (replanificar && !candidatos.isEmpty()) {
-                System.out.printf("⏲️ t+%d: Replanificando, candidatos = %s%n",
-                        tiempoActual, candidatos.stream().map(p->p.id).collect(Collectors.toList()));
-                // ——— A ———  cancelar cualquier eventoEntrega pendiente de esos candidatos
-                // eventosEntrega.removeIf(ev -> candidatos.contains(ev.pedido));
-                Set<Integer> idsCandidatos = candidatos.stream().map(p->p.id).collect(toSet());
-                eventosEntrega.removeIf(ev -> idsCandidatos.contains(ev.pedido.id));
-                // ——— B ———  desprogramar los pedidos para que puedan reasignarse
-                for (Pedido p : candidatos) p.programado = false;
-                List<Ruta> rutas = ejecutarACO(candidatos, flotaEstado, tiempoActual);
-                System.out.printf("    → Rutas devueltas para %s%n",
-                        rutas.stream()
-                                .flatMap(r->r.pedidos.stream())
-                                .map(idx->candidatos.get(idx).id)
-                                .collect(Collectors.toList()));
-                aplicarRutas(tiempoActual, rutas, candidatos);
+        }
+        return ejecutorPlanificador;
+    }
+
+    /**
+     * Envía la replanificación al hilo planificador sobre una instantánea inmutable de la
+     * flota y los candidatos (el ACO solo lee posición, volumen y límite de cada pedido, que
+     * no cambian). Los candidatos quedan marcados {@code enPlanificacion} hasta que vuelva.
+     */
+    private void lanzarPlanAsincrono(int tiempoActual, List<Pedido> candidatos, List<CamionEstado> flotaEstado) {
+        List<Pedido> instantanea = Collections.unmodifiableList(new ArrayList<>(candidatos));
+        List<CamionEstado> flotaInstantanea = deepCopyFlota(flotaEstado);
+        for (Pedido p : instantanea) p.enPlanificacion = true;
+        PlanAsincrono plan = new PlanAsincrono(instantanea, tiempoActual, generacion);
+        plan.futuro = ejecutorPlanificador().submit(() -> {
+            long t0 = System.nanoTime();
+            List<Ruta> rutas = planificar(instantanea, flotaInstantanea, tiempoActual);
+            plan.latenciaMs = (System.nanoTime() - t0) / 1_000_000;
+            return rutas;
+        });
+        planEnCurso = plan;
+        salida.printf("🧵 t+%d: Replanificación enviada al hilo planificador (%d candidatos)%n",
+                tiempoActual, instantanea.size());
+    }
+
+    /**
+     * Si el plan en curso ya terminó, lo valida contra el estado real y aplica la parte
+     * vigente. Los pedidos obsoletos vuelven a estar disponibles y fuerzan otra replanificación.
+     * Pasada la ventana de coalescencia se espera al hilo planificador como mucho
+     * {@link #ESPERA_PLAN_MS} por minuto, para no congelar el hilo de la UI. Un plan de otra
+     * generación (anterior a un reinicio) se ignora.
+     */
+    private void recogerPlanAsincrono(int tiempoActual) {
+        if (planEnCurso == null) return;
+        PlanAsincrono plan = planEnCurso;
+        List<Ruta> rutas;
+        try {
+            if (plan.futuro.isDone()) {
+                rutas = plan.futuro.get();
+            } else if (tiempoActual - plan.tiempoEnvio < ventanaCoalescencia) {
+                return;
+            } else {
+                rutas = plan.futuro.get(ESPERA_PLAN_MS, TimeUnit.MILLISECONDS);
+            }
+        } catch (TimeoutException e) {
+            return;   // se vuelve a mirar el minuto siguiente
+        } catch (InterruptedException | ExecutionException e) {
+            planEnCurso = null;
+            for (Pedido p : plan.candidatos) p.enPlanificacion = false;
+            salida.printf("⚠️ t+%d: Falló la replanificación asíncrona de t+%d: %s%n",
+                    tiempoActual, plan.tiempoEnvio, e);
+            forzarReplan = true;
+            return;
+        }
+        planEnCurso = null;
+        for (Pedido p : plan.candidatos) p.enPlanificacion = false;
+        if (plan.generacion != generacion) return;
+        salida.printf("🧵 t+%d: Llega el plan de t+%d (%d ms)%n",
+                tiempoActual, plan.tiempoEnvio, plan.latenciaMs);
+        List<Ruta> vigentes = validarPlan(tiempoActual, rutas, plan.candidatos);
+        cerrarReplanificacion(tiempoActual, plan.candidatos, vigentes, plan.latenciaMs);
+    }
+
+    /**
+     * Revalida un plan calculado sobre un estado ya pasado: cada pedido se vuelve a simular
+     * desde la posición, carga, combustible y minuto reales de su camión. Devuelve solo las
+     * partes aún factibles; el resto se cuenta como obsoleto y se replanifica.
+     */
+    private List<Ruta> validarPlan(int tiempoActual, List<Ruta> rutas, List<Pedido> candidatos) {
+        List<Ruta> vigentes = new ArrayList<>();
+        int obsoletos = 0;
+        for (Ruta r : rutas) {
+            if (r.pedidos.isEmpty()) continue;
+            Camion real = flota.get(r.estadoCamion.indice);
+            boolean camionVigente = real.getStatus() == Camion.TruckStatus.AVAILABLE;
+            Ruta prueba = new Ruta();
+            prueba.estadoCamion = estadoDe(real);
+            for (int idx : r.pedidos) {
+                Pedido p = candidatos.get(idx);
+                boolean vigente = camionVigente && !p.atendido && !p.descartado && !p.programado
+                        && asignarPedido(prueba, idx, p, tiempoActual);
+                if (!vigente) obsoletos++;
             }
+            if (!prueba.pedidos.isEmpty()) vigentes.add(prueba);
+        }
+        metricas.registrarPlanAsincrono(obsoletos);
+        if (obsoletos > 0) {
+            salida.printf("♻️ t+%d: %d pedidos del plan quedaron obsoletos, se vuelven a planificar%n",
+                    tiempoActual, obsoletos);
+            forzarReplan = true;
+        }
+        return vigentes;
+    }
 
+    /**
+     * Agrupa los candidatos en paradas, reduce el problema (asignaciones forzadas y camiones
+     * dominados) y ejecuta el ACO sobre lo que queda. Las rutas devueltas usan índices
+     * sobre {@code candidatos}.
+     */
+    List<Ruta> planificar(List<Pedido> candidatos, List<CamionEstado> flotaEstado, int tiempoActual) {
+        long capacidadMax = 0;
+        for (CamionEstado est : flotaEstado) capacidadMax = Math.max(capacidadMax, est.capacidadDisponible);
+        List<Parada> paradas = Parada.agrupar(candidatos, capacidadMax);
+        metricas.registrarParadas(candidatos.size(), paradas.size());
+        if (paradas.size() < candidatos.size()) {
+            salida.printf("📍 t+%d: %d pedidos agrupados en %d paradas%n",
+                    tiempoActual, candidatos.size(), paradas.size());
+        }
 
-            if (tiempoActual % 60 == 0)
-                visualizador.render(tiempoActual, pedidos, flota, bloqueos, depositoX, depositoY);
+        ReduccionProblema red = ReduccionProblema.reducir(paradas, flotaEstado, tiempoActual);
+        metricas.registrarReduccion(red);
+        salida.printf("🔎 t+%d: Reducción V×N %d×%d → %d×%d (%d forzados, %d camiones dominados)%n",
+                tiempoActual, red.camionesIniciales, red.pedidosIniciales,
+                red.flota.size(), red.pedidos.size(), red.pedidosForzados, red.camionesDominados);
+        List<Ruta> rutasACO = red.pedidos.isEmpty() || red.flota.isEmpty()
+                ? Collections.emptyList()
+                : resolverConCache(red.pedidos, red.flota, tiempoActual);
+        List<Ruta> rutas = red.combinar(rutasACO);
+        Parada.expandir(rutas, paradas);
+        return rutas;
+    }
+
+    /** Ejecuta el ACO salvo que el mismo subproblema ya tenga un plan en la caché. */
+    private List<Ruta> resolverConCache(List<Pedido> pedidos, List<CamionEstado> flotaEstado, int tiempoActual) {
+        long firma = CachePlanes.firma(pedidos, flotaEstado, tiempoActual);
+        List<Ruta> rutas = cachePlanes.buscar(firma, pedidos, flotaEstado, tiempoActual);
+        metricas.registrarCachePlanes(rutas != null);
+        if (rutas != null) {
+            salida.printf("🗃️ t+%d: Plan recuperado de la caché, se omite el ACO%n", tiempoActual);
+            return rutas;
         }
-        long tEnd = System.currentTimeMillis();
-        long tiempoEjecucionMs = tEnd - tStart;
+        rutas = resolverPorRegiones(pedidos, flotaEstado, tiempoActual);
+        cachePlanes.guardar(firma, pedidos, rutas);
+        return rutas;
+    }
 
-        double holguraPromedioMin = holguras.stream()
-                .mapToDouble(Double::doubleValue)
-                .average()
-                .orElse(0.0) / 60.0;
-        double consumoTotal = flota.stream()
-                .mapToDouble(Camion::getConsumoAcumulado)
-                .sum();
-        System.out.println("🏁 Reporte Final:");
-        System.out.printf("• Tiempo de ejecución: %d ms%n", tiempoEjecucionMs);
-        System.out.printf("• Holgura promedio: %.2f min%n", holguraPromedioMin);
-        System.out.printf("• Consumo total: %.2f galones%n", consumoTotal);
+    /** Parte el problema en regiones si es lo bastante grande; si no, una sola colonia. */
+    private List<Ruta> resolverPorRegiones(List<Pedido> pedidos, List<CamionEstado> flotaEstado, int tiempoActual) {
+        int regiones = DescomposicionRegiones.regionesUtiles(regionesPlanificacion, pedidos.size(), flotaEstado.size());
+        if (regiones < 2) return ejecutarACO(pedidos, flotaEstado, tiempoActual);
 
-        //reporteFinal();
+        DescomposicionRegiones desc = DescomposicionRegiones.particionar(pedidos, flotaEstado, regiones);
+        List<Ruta> rutas = desc.resolver(this, pedidos, flotaEstado, tiempoActual, ejecutorRegiones());
+        metricas.registrarRegiones(desc.regionesResueltas, desc.pedidosReubicados);
+        salida.printf("🗺️ t+%d: %d pedidos resueltos en %d regiones, %d reubicados en la frontera%n",
+                tiempoActual, pedidos.size(), desc.regionesResueltas, desc.pedidosReubicados);
+        return rutas;
+    }
+
+    private synchronized ExecutorService ejecutorRegiones() {
+        if (ejecutorRegiones == null) {
+            int hilos = Math.max(1, Runtime.getRuntime().availableProcessors());
+            ejecutorRegiones = Executors.newFixedThreadPool(hilos, r -> {
+                Thread hilo = new Thread(r, "planificador-region");
+                hilo.setDaemon(true);
+                return hilo;
+            });
+        }
+        return ejecutorRegiones;
+    }
+
+    /** Foto del estado real de un camión tal como la ve el planificador. */
+    private static CamionEstado estadoDe(Camion c) {
+        CamionEstado est = new CamionEstado();
+        est.id = c.getId();
+        est.indice = c.getIndice();
+        est.tipo = c.getTipo();
+        est.posX = c.getX();
+        est.posY = c.getY();
+        est.capacidadDisponible = c.getDisponibleFijo();
+        est.tiempoLibre = c.getLibreEn();
+        est.tara = c.getTara();
+        est.combustibleDisponible = c.getCombustibleFijo();
+        return est;
     }
+
     // ------------------ Clases auxiliares ------------------
     static class CamionEstado {
         String id;
+        int indice;     // índice del camión en el RegistroFlota
+        String tipo;
         int posX, posY;
-        double capacidadDisponible;
-        public double combustibleDisponible;
+        long capacidadDisponible;       // punto fijo (ver Volumen)
+        public long combustibleDisponible;  // microgalones
         int tiempoLibre;
         double tara;
     }
@@ -468,17 +1307,50 @@ public class ACOPlanner {
         CamionEstado estadoCamion;
         List<Integer> pedidos = new ArrayList<>();
         double distancia = 0;
-        double consumo = 0;
+        long consumo = 0;    // microgalones
+        long firma;      // hash de (clase de camión, pedidos en orden) para la tabla de transposición
     }
     // ------------------- Algoritmo ACO para VRP -------------------
     public List<Ruta> ejecutarACO(List<Pedido> pedidosActivos, List<CamionEstado> flotaEstado , int tiempoActual) {
+        return ejecutarACO(pedidosActivos, flotaEstado, tiempoActual, azar.derivar());
+    }
+
+    /** Generador propio para una colonia, derivado del azar de la simulación (ver {@link Aleatorio}). */
+    Aleatorio derivarAzar() {
+        return azar.derivar();
+    }
+
+    /** Una colonia que sortea con {@code flujo}, de uso exclusivo suyo. */
+    List<Ruta> ejecutarACO(List<Pedido> pedidosActivos, List<CamionEstado> flotaEstado, int tiempoActual, Aleatorio flujo) {
         int V = flotaEstado.size(), N = pedidosActivos.size();
-        // feromonas[v][i]: feromona para asignación camión v al pedido i
-        double[][] tau = new double[V][N];
+        // Camiones equivalentes (mismo tipo, posición, carga, combustible y tiempo libre)
+        // comparten clase: la feromona se aprende por clase y no por camión
+        int[] claseDe = clasesDeEquivalencia(flotaEstado);
+        int C = 0;
+        for (int k : claseDe) C = Math.max(C, k + 1);
+        metricas.registrarClases(V, C);
+        // tau[k][i]: feromona para asignación de la clase de camión k al pedido i
+        double[][] tau = new double[C][N];
         for (double[] row : tau) Arrays.fill(row, 1.0);
 
-        List<Ruta> mejorSol = null;
-        double mejorCoste = Double.MAX_VALUE;
+        // Semilla voraz (EDF): incumbente inicial, cota superior y feromona de partida.
+        // Así la replanificación siempre tiene respuesta aunque no quede presupuesto.
+        List<Ruta> mejorSol = construirSemilla(pedidosActivos, flotaEstado, tiempoActual);
+        double mejorCoste = calcularCosteTotal(mejorSol, N);
+        double costeSemilla = mejorCoste;
+        for (int v = 0; v < V; v++) {
+            for (int idx : mejorSol.get(v).pedidos) {
+                tau[claseDe[v]][idx] += Q / Math.max(mejorCoste, 1e-6);
+            }
+        }
+
+        // Cota inferior admisible del coste de cada pedido y de todos juntos
+        TablaTransposicion tabla = tablasTransposicion.get();
+        tabla.nuevaGeneracion();
+        double[] cotaPedido = cotasInferiores(pedidosActivos, flotaEstado);
+        double cotaTotal = 0;
+        for (double cota : cotaPedido) cotaTotal += cota;
+        int abandonadas = 0;
 
         for (int it = 0; it < ITERACIONES; it++) {
             List<List<Ruta>> soluciones = new ArrayList<>();
@@ -490,60 +1362,126 @@ public class ACOPlanner {
                 // Clonar estado inicial de flota para esta hormiga
                 List<CamionEstado> clonedFlota = deepCopyFlota(flotaEstado);
                 List<Ruta> rutas = initRutas(clonedFlota);
+                for (int v = 0; v < V; v++) rutas.get(v).firma = TablaTransposicion.firmaInicial(claseDe[v]);
+                // coste ya incurrido + cota de lo que falta: si a medio construir ya no puede mejorar
+                // al incumbente, se abandona; toda hormiga completa deposita feromona
+                double costeParcial = 0, cotaRestante = cotaTotal;
+                boolean abandonada = false;
 
                 while (!noAsignados.isEmpty()) {
                     // Calcular probabilidades para pares (camión, pedido)
-                    double[][] prob = calcularProbabilidades(rutas, pedidosActivos, noAsignados, tau , tiempoActual);
+                    double[][] prob = calcularProbabilidades(rutas, pedidosActivos, noAsignados, tau, claseDe, tiempoActual);
                     // Seleccionar par con exploración/expLOT
-                    Seleccion sel = muestrearPar(prob, noAsignados);
-                    boolean ok = asignarPedidoARuta(sel.camionIdx, sel.pedidoIdx, rutas, pedidosActivos, tiempoActual);
+                    Seleccion sel = muestrearPar(prob, noAsignados, flujo);
+                    long consumoAntes = rutas.get(sel.camionIdx).consumo;
+                    boolean ok = asignarPedidoARuta(sel.camionIdx, sel.pedidoIdx, rutas, pedidosActivos, tiempoActual, tabla);
                     if (ok) {
                         noAsignados.remove(Integer.valueOf(sel.pedidoIdx));
+                        costeParcial += Volumen.aGalones(rutas.get(sel.camionIdx).consumo - consumoAntes);
                     } else {
                         // si no se asignó, puedes:
                         // – poner prob[sel.camionIdx][sel.pedidoIdx]=0 para no volver a muestrear ese par
                         // – o directamente quitar el pedido si realmente no hay ningún camión viable
                         noAsignados.remove(Integer.valueOf(sel.pedidoIdx));
+                        costeParcial += PENAL_NO_ASIGNADO;
+                    }
+                    cotaRestante -= cotaPedido[sel.pedidoIdx];
+                    if (!noAsignados.isEmpty() && costeParcial + cotaRestante >= mejorCoste) {
+                        abandonada = true;
+                        break;
                     }
                 }
+                if (abandonada) {
+                    abandonadas++;
+                    continue;
+                }
                 soluciones.add(rutas);
             }
             // Evaporación
-            for (int v = 0; v < V; v++) for (int i = 0; i < N; i++) tau[v][i] *= (1 - RHO);
+            for (int k = 0; k < C; k++) for (int i = 0; i < N; i++) tau[k][i] *= (1 - RHO);
             // Depósito de feromona y búsqueda de mejor
-            // Construir mapa de id → índice original
-            Map<String, Integer> idToIndex = new HashMap<>();
-            for (int i = 0; i < flotaEstado.size(); i++) {
-                idToIndex.put(flotaEstado.get(i).id, i);
-            }
             for (List<Ruta> sol : soluciones) {
-                double coste = calcularCosteTotal(sol);
+                double coste = calcularCosteTotal(sol, N);
                 if (coste < mejorCoste) {
                     mejorCoste = coste;
                     mejorSol = sol;
                 }
-                // Actualizar feromonas por cada ruta y pedido
-                for (Ruta ruta : sol) {
-                    int v = idToIndex.getOrDefault(ruta.estadoCamion.id, -1);
-                    if (v >= 0) {
-                        for (int idx : ruta.pedidos) {
-                            tau[v][idx] += Q / coste;
-                        }
+                // Actualizar feromonas por cada ruta y pedido (la ruta v es la del camión v de flotaEstado)
+                for (int v = 0; v < V; v++) {
+                    for (int idx : sol.get(v).pedidos) {
+                        tau[claseDe[v]][idx] += Q / Math.max(coste, 1e-6);
                     }
                 }
             }
         }
-        return mejorSol != null ? mejorSol : Collections.emptyList();
+        metricas.registrarSemilla(mejorCoste < costeSemilla);
+        metricas.registrarHormigas(ITERACIONES * HORMIGAS, abandonadas);
+        metricas.registrarTransposicion(tabla.consultas, tabla.aciertos, tabla.desalojos);
+        return mejorSol;
+    }
+
+    /**
+     * Cota inferior admisible del coste que aporta cada pedido a una solución: o se queda
+     * sin asignar ({@link #PENAL_NO_ASIGNADO}) o algún camión llega desde su posición
+     * inicial o desde otro pedido, con la tara más ligera de la flota.
+     */
+    private double[] cotasInferiores(List<Pedido> pedidosActivos, List<CamionEstado> flotaEstado) {
+        double taraMin = Double.MAX_VALUE;
+        for (CamionEstado est : flotaEstado) taraMin = Math.min(taraMin, est.tara);
+        double[] cota = new double[pedidosActivos.size()];
+        for (int i = 0; i < cota.length; i++) {
+            Pedido p = pedidosActivos.get(i);
+            int distMin = Integer.MAX_VALUE;
+            for (CamionEstado est : flotaEstado) {
+                distMin = Math.min(distMin, Math.abs(est.posX - p.x) + Math.abs(est.posY - p.y));
+            }
+            for (int j = 0; j < cota.length && distMin > 0; j++) {
+                if (j == i) continue;
+                Pedido q = pedidosActivos.get(j);
+                distMin = Math.min(distMin, Math.abs(q.x - p.x) + Math.abs(q.y - p.y));
+            }
+            cota[i] = Math.min(PENAL_NO_ASIGNADO, Volumen.aGalones(combustiblePara(distMin, taraMin, p.volumen)));
+        }
+        return cota;
+    }
+
+    /**
+     * Solución constructiva rápida: recorre los pedidos por fecha límite (EDF) y asigna cada
+     * uno al camión factible que menos combustible gasta en llevarlo. Una ruta por camión,
+     * en el mismo orden que {@code flotaEstado}.
+     */
+    private List<Ruta> construirSemilla(List<Pedido> pedidosActivos, List<CamionEstado> flotaEstado, int tiempoActual) {
+        List<Ruta> rutas = initRutas(deepCopyFlota(flotaEstado));
+        List<Integer> orden = new ArrayList<>();
+        for (int i = 0; i < pedidosActivos.size(); i++) orden.add(i);
+        orden.sort(Comparator.comparingInt(i -> pedidosActivos.get(i).tiempoLimite));
+        for (int idx : orden) {
+            Pedido p = pedidosActivos.get(idx);
+            Ruta mejor = null;
+            long mejorGasto = Long.MAX_VALUE;
+            for (Ruta r : rutas) {
+                if (!esFactible(r.estadoCamion, p, tiempoActual)) continue;
+                long gasto = combustibleNecesario(r.estadoCamion, p);
+                if (gasto < mejorGasto) {
+                    mejorGasto = gasto;
+                    mejor = r;
+                }
+            }
+            if (mejor != null) asignarPedido(mejor, idx, p, tiempoActual);
+        }
+        return rutas;
     }
     // Métodos a implementar:
     /**
      * Realiza una copia profunda del estado de la flota para cada hormiga.
      */
-    private List<CamionEstado> deepCopyFlota(List<CamionEstado> original) {
+    static List<CamionEstado> deepCopyFlota(List<CamionEstado> original) {
         List<CamionEstado> copia = new ArrayList<>();
         for (CamionEstado est : original) {
             CamionEstado cl = new CamionEstado();
             cl.id = est.id;
+            cl.indice = est.indice;
+            cl.tipo = est.tipo;
             cl.posX = est.posX;
             cl.posY = est.posY;
             cl.capacidadDisponible = est.capacidadDisponible;
@@ -555,6 +1493,28 @@ public class ACOPlanner {
         return copia;
     }
 
+    /**
+     * Agrupa los camiones intercambiables en clases de equivalencia: mismo tipo, misma
+     * posición y mismos carga, combustible y tiempo libre. Devuelve la clase de cada camión,
+     * numeradas desde 0 en orden de aparición.
+     */
+    static int[] clasesDeEquivalencia(List<CamionEstado> flotaEstado) {
+        int[] claseDe = new int[flotaEstado.size()];
+        Map<List<Object>, Integer> clases = new HashMap<>();
+        for (int v = 0; v < flotaEstado.size(); v++) {
+            CamionEstado c = flotaEstado.get(v);
+            List<Object> clave = Arrays.asList(c.tipo, c.posX, c.posY,
+                    c.capacidadDisponible, c.combustibleDisponible, c.tiempoLibre, c.tara);
+            Integer k = clases.get(clave);
+            if (k == null) {
+                k = clases.size();
+                clases.put(clave, k);
+            }
+            claseDe[v] = k;
+        }
+        return claseDe;
+    }
+
     /**
      * Inicializa una ruta vacía para cada camión en la flota.
      */
@@ -576,39 +1536,33 @@ public class ACOPlanner {
             List<Pedido> pedidosActivos,
             List<Integer> noAsignados,
             double[][] tau,
+            int[] claseDe,
             int tiempoActual) {
 
         int V = rutas.size();
         double[][] prob = new double[V][pedidosActivos.size()];
-        double minPorKm = 60.0 / 50.0;
+        // Solo el primer camión aún vacío de cada clase la representa: sus gemelos
+        // darían soluciones simétricas. Al usarlo, el siguiente gemelo pasa a representarla.
+        boolean[] claseRepresentada = new boolean[tau.length];
 
         for (int v = 0; v < V; v++) {
             CamionEstado c = rutas.get(v).estadoCamion;
+            if (rutas.get(v).pedidos.isEmpty()) {
+                if (claseRepresentada[claseDe[v]]) continue;
+                claseRepresentada[claseDe[v]] = true;
+            }
 
             for (int idx : noAsignados) {
                 Pedido p = pedidosActivos.get(idx);
 
-                // 1) filtro capacidad
-                if (c.capacidadDisponible < p.volumen) continue;
-
-                // 2) filtro ventana de tiempo
-                int dx = Math.abs(c.posX - p.x);
-                int dy = Math.abs(c.posY - p.y);
-                int distKm = dx + dy;
-                int tiempoViaje = (int)Math.ceil(distKm * minPorKm);
-                if (tiempoActual + tiempoViaje > p.tiempoLimite) continue;
-
-                // 3) filtro combustible (enunciado: consumo = distKm * pesoTotalTon / 180)
-                double pesoCargaTon = p.volumen * 0.5;
-                double pesoTaraTon  = c.tara / 1000.0;
-                double pesoTotalTon = pesoCargaTon + pesoTaraTon;
-                double galNecesarios = distKm * pesoTotalTon / 180.0;
-                if (c.combustibleDisponible < galNecesarios) continue;
+                // 1-3) filtros de capacidad, ventana de tiempo y combustible
+                if (!esFactible(c, p, tiempoActual)) continue;
 
                 // ✔️ si llegamos aquí, es factible: calculamos heurística + feromona
+                int distKm = Math.abs(c.posX - p.x) + Math.abs(c.posY - p.y);
                 double penalTiempo = 1.0 / (1 + Math.max(0, c.tiempoLibre - tiempoActual));
                 double eta = 1.0 / (distKm + 1) * penalTiempo;
-                prob[v][idx] = Math.pow(tau[v][idx], ALPHA) * Math.pow(eta, BETA);
+                prob[v][idx] = Math.pow(tau[claseDe[v]][idx], ALPHA) * Math.pow(eta, BETA);
             }
         }
 
@@ -623,12 +1577,13 @@ public class ACOPlanner {
     private class Seleccion { int camionIdx, pedidoIdx; }
     private Seleccion muestrearPar(
             double[][] prob,
-            List<Integer> noAsignados) {
+            List<Integer> noAsignados,
+            Aleatorio flujo) {
         // sumar todas las probabilidades
         double total = 0;
         for (int v = 0; v < prob.length; v++)
             for (int idx : noAsignados) total += prob[v][idx];
-        double r = Math.random() * total;
+        double r = flujo.siguiente() * total;
         double acumulado = 0;
         for (int v = 0; v < prob.length; v++) {
             for (int idx : noAsignados) {
@@ -651,17 +1606,37 @@ public class ACOPlanner {
     /**
      * Asigna un pedido a la ruta seleccionada y actualiza estado del camión,
      * filtrando por capacidad, ventana de tiempo y combustible.
+     * Si otra hormiga ya simuló ese mismo prefijo de ruta, el resultado sale de la tabla.
      */
     private boolean asignarPedidoARuta(
             int camionIdx,
             int pedidoIdx,
             List<Ruta> rutas,
             List<Pedido> pedidosActivos,
-            int tiempoActual) {
-
+            int tiempoActual,
+            TablaTransposicion tabla) {
         Ruta ruta = rutas.get(camionIdx);
+        long clave = TablaTransposicion.extender(ruta.firma, pedidoIdx);
+        int ranura = tabla.buscar(clave);
+        if (ranura >= 0) {
+            if (!tabla.esFactible(ranura)) return false;
+            tabla.restaurar(ranura, ruta);
+            ruta.pedidos.add(pedidoIdx);
+            ruta.firma = clave;
+            return true;
+        }
+        boolean ok = asignarPedido(ruta, pedidoIdx, pedidosActivos.get(pedidoIdx), tiempoActual);
+        tabla.guardar(clave, ok ? ruta : null);
+        if (ok) ruta.firma = clave;
+        return ok;
+    }
+
+    /**
+     * Núcleo de {@link #asignarPedidoARuta}: aplica el pedido p (índice pedidoIdx) sobre una
+     * ruta concreta. También lo usa {@link ReduccionProblema} para las asignaciones forzadas.
+     */
+    static boolean asignarPedido(Ruta ruta, int pedidoIdx, Pedido p, int tiempoActual) {
         CamionEstado c = ruta.estadoCamion;
-        Pedido p   = pedidosActivos.get(pedidoIdx);
 
         // 1) Evitar duplicados
         if (ruta.pedidos.contains(pedidoIdx)) return false;
@@ -673,18 +1648,14 @@ public class ACOPlanner {
         int dx = Math.abs(c.posX - p.x);
         int dy = Math.abs(c.posY - p.y);
         int distKm  = dx + dy;
-        double minPorKm = 60.0 / 50.0;
-        int tiempoViaje = (int) Math.ceil(distKm * minPorKm);
+        int tiempoViaje = tiempoViaje(distKm);
 
         // 4) Ventana de tiempo: verificar que llega antes del límite
         if (tiempoActual + tiempoViaje > p.tiempoLimite) return false;
 
         // 5) COMPROBAR combustible disponible según enunciado:
         //    consumo = distKm * peso_totalTon / 180
-        double pesoCargaTon = p.volumen * 0.5;               // 0.5 ton/m³
-        double pesoTaraTon  = c.tara / 1000.0;              // convertir kg → ton
-        double pesoTotalTon = pesoTaraTon + pesoCargaTon;
-        double galNecesarios = distKm * pesoTotalTon / 180.0;
+        long galNecesarios = combustibleNecesario(c, p);
         if (c.combustibleDisponible < galNecesarios) return false;
 
         // --- Si pasa todos los filtros, actualizamos el estado ---
@@ -695,7 +1666,7 @@ public class ACOPlanner {
         c.posY = p.y;
 
         // 7) Actualizar capacidad, consumo y combustible restante
-        double nuevaCapacidad = c.capacidadDisponible - p.volumen;
+        long nuevaCapacidad = c.capacidadDisponible - p.volumen;
         if (nuevaCapacidad < 0) {
             // no modificamos c.capacidadDisponible, simplemente rechazamos
             return false;
@@ -714,20 +1685,53 @@ public class ACOPlanner {
 
 
 
+    /** Tiempo de viaje en minutos a 50 km/h para una distancia Manhattan en km. */
+    static int tiempoViaje(int distKm) {
+        return (int) Math.ceil(distKm * (60.0 / 50.0));
+    }
+
     /**
-     * Calcula el coste total de la solución (sumatoria de consumos).
+     * Combustible (microgalones) necesario para llevar p desde la posición actual de c.
+     * Enunciado: consumo = distKm * peso_totalTon / 180, con 0.5 ton/m³ de carga y tara en kg.
      */
-    private double calcularCosteTotal(List<Ruta> sol) {
-        double total = 0;
-        for (Ruta r : sol) total += r.consumo;
-        return total;
+    static long combustibleNecesario(CamionEstado c, Pedido p) {
+        int distKm = Math.abs(c.posX - p.x) + Math.abs(c.posY - p.y);
+        return combustiblePara(distKm, c.tara, p.volumen);
     }
 
-    public Camion findCamion(String id) {
-        for (Camion c : flota) {
-            if (c.getId().equals(id)) return c;
+    /** Consumo en microgalones de distKm km con esa tara (kg) y ese volumen (punto fijo); redondea una sola vez. */
+    static long combustiblePara(int distKm, double taraKg, long volumen) {
+        double pesoTotalTon = taraKg / 1000.0 + Volumen.aM3(volumen) * 0.5;
+        return Volumen.deGalones(distKm * pesoTotalTon / 180.0);
+    }
+
+    /**
+     * Filtros de factibilidad del par (camión, pedido): capacidad, ventana de tiempo y combustible.
+     * Es el mismo criterio que aplican las hormigas al construir sus rutas.
+     */
+    static boolean esFactible(CamionEstado c, Pedido p, int tiempoActual) {
+        if (c.capacidadDisponible < p.volumen) return false;
+        int distKm = Math.abs(c.posX - p.x) + Math.abs(c.posY - p.y);
+        if (tiempoActual + tiempoViaje(distKm) > p.tiempoLimite) return false;
+        return c.combustibleDisponible >= combustibleNecesario(c, p);
+    }
+
+    /**
+     * Calcula el coste total de la solución (sumatoria de consumos), más
+     * {@link #PENAL_NO_ASIGNADO} por cada uno de los N pedidos que quedó sin ruta.
+     */
+    private double calcularCosteTotal(List<Ruta> sol, int N) {
+        long total = 0;
+        int asignados = 0;
+        for (Ruta r : sol) {
+            total += r.consumo;
+            asignados += r.pedidos.size();
         }
-        return null;
+        return Volumen.aGalones(total) + PENAL_NO_ASIGNADO * (N - asignados);
+    }
+
+    public Camion findCamion(String id) {
+        return registroFlota.buscar(id);
     }
     /**
      * Verifica si el camión c puede insertar el pedido p en su ruta
@@ -735,7 +1739,7 @@ public class ACOPlanner {
      */
     private boolean esDesvioValido(Camion c, Pedido p, int tiempoActual) {
         // Parámetros
-        double disponible = c.getDisponible();
+        long disponible = c.getDisponibleFijo();
         int hora = tiempoActual;
         int currX = c.getX(), currY = c.getY();
 
@@ -775,7 +1779,7 @@ public class ACOPlanner {
         int mejorLlegada = Integer.MAX_VALUE;
 
         for (int idx = 0; idx <= originales.size(); idx++) {
-            double disponible = c.getDisponible();
+            long disponible = c.getDisponibleFijo();
             int hora = tiempoActual;
             int simX = c.getX(), simY = c.getY();
 
@@ -825,7 +1829,7 @@ public class ACOPlanner {
             else                      current.y--;
 
             Point next = new Point(current.x, current.y);
-            // System.out.printf("• Consumo total: %.2f galones%n", consumoTotal);
+            // salida.printf("• Consumo total: %.2f galones%n", consumoTotal);
             // 3) chequea bloqueo en el tramo prev→next al tiempo t
             int tiempoLlegada = t + 1;
             if (isBlockedMove(prev, next, tiempoLlegada)) {
@@ -856,8 +1860,8 @@ public class ACOPlanner {
         // 0) Pre-filtrar rutas que no caben enteras en la flota real
         for (Iterator<Ruta> itR = rutas.iterator(); itR.hasNext(); ) {
             Ruta r = itR.next();
-            Camion real = findCamion(r.estadoCamion.id);
-            double disponible = real.getDisponible();
+            Camion real = flota.get(r.estadoCamion.indice);
+            long disponible = real.getDisponibleFijo();
             boolean allFit = true;
             for (int idx : r.pedidos) {
                 if (disponible < activos.get(idx).volumen) {
@@ -867,7 +1871,7 @@ public class ACOPlanner {
                 disponible -= activos.get(idx).volumen;
             }
             if (!allFit) {
-                System.out.printf("⚠ t+%d: Ruta descartada para %s (no cabe volumen) → %s%n",
+                salida.printf("⚠ t+%d: Ruta descartada para %s (no cabe volumen) → %s%n",
                         tiempoActual, real.getId(),
                         r.pedidos.stream().map(i -> activos.get(i).id).collect(Collectors.toList()));
                 itR.remove();
@@ -875,17 +1879,17 @@ public class ACOPlanner {
         }
         // --- Reemplaza a partir de: for (Ruta ruta : rutas) { … } ---
         for (Ruta ruta : rutas) {
-            Camion camion = findCamion(ruta.estadoCamion.id);
+            Camion camion = flota.get(ruta.estadoCamion.indice);
             Pedido nuevo = activos.get(ruta.pedidos.get(0));
 
             // 1) Intentamos desvío si el camión ya está en ruta
             if (camion.getStatus() == Camion.TruckStatus.DELIVERING
-                    && esDesvioValido(camion, nuevo, tiempoActual) && camion.getDisponible() >= nuevo.volumen) {
+                    && esDesvioValido(camion, nuevo, tiempoActual) && camion.getDisponibleFijo() >= nuevo.volumen) {
 
                 int idx = posicionOptimaDeInsercion(camion, nuevo, tiempoActual);
                 camion.getRutaPendiente().add(idx, nuevo);
-                camion.setDisponible(camion.getDisponible() - nuevo.volumen);
-                System.out.printf("🔀 t+%d: Desvío – insertado Pedido #%d en %s en posición %d%n", tiempoActual, nuevo.id, camion.getId(), idx);
+                camion.setDisponibleFijo(camion.getDisponibleFijo() - nuevo.volumen);
+                salida.printf("🔀 t+%d: Desvío – insertado Pedido #%d en %s en posición %d%n", tiempoActual, nuevo.id, camion.getId(), idx);
                 // — tras insertar el desvío debemos programar su entrega:
                 // posición actual del camión
                 int cx = camion.getX(), cy = camion.getY();
@@ -899,8 +1903,8 @@ public class ACOPlanner {
                 camion.appendToHistory(path);
                 // programamos el evento
                 eventosEntrega.add(new EntregaEvent(tiempoActual + tViaje, camion, nuevo));
-                nuevo.programado = true;
-                System.out.printf("🕒 eventoEntrega programado (desvío) para t+%d en (%d,%d)%n", tiempoActual + tViaje, nuevo.x, nuevo.y);
+                nuevo.setProgramado(true);
+                salida.printf("🕒 eventoEntrega programado (desvío) para t+%d en (%d,%d)%n", tiempoActual + tViaje, nuevo.x, nuevo.y);
 
             } else {
                 // 2) Asignación normal: limpiamos rutaPendiente y marcamos status
@@ -913,13 +1917,13 @@ public class ACOPlanner {
                     Pedido p = activos.get(pedidoIdx);
 
                     // 0) Chequeo de capacidad
-                    if (camion.getDisponible() < p.volumen) {
-                        System.out.printf("⚠ t+%d: Camión %s sin espacio para Pedido #%d (vol=%.1f), saltando%n",
-                                tiempoActual, camion.getId(), p.id, p.volumen);
+                    if (camion.getDisponibleFijo() < p.volumen) {
+                        salida.printf("⚠ t+%d: Camión %s sin espacio para Pedido #%d (vol=%.1f), saltando%n",
+                                tiempoActual, camion.getId(), p.id, p.getVolumen());
                         continue;
                     }
 
-                    System.out.printf("⏱️ t+%d: Asignando Pedido #%d al Camión %s%n",
+                    salida.printf("⏱️ t+%d: Asignando Pedido #%d al Camión %s%n",
                             tiempoActual, p.id, camion.getId());
 
                     List<Point> path = buildManhattanPath(cx, cy, p.x, p.y,tiempoActual);
@@ -928,12 +1932,12 @@ public class ACOPlanner {
 
                     camion.setRuta(path);
                     camion.appendToHistory(path);
-                    p.programado = true;
+                    p.setProgramado(true);
 
                     eventosEntrega.add(new EntregaEvent(
                             tiempoActual + tViaje, camion, p
                     ));
-                    System.out.printf("🕒 eventoEntrega programado para t+%d en (%d,%d)%n",
+                    salida.printf("🕒 eventoEntrega programado para t+%d en (%d,%d)%n",
                             tiempoActual + tViaje, p.x, p.y);
 
                     camion.setX(p.x) ; camion.setY(p.y);
@@ -1021,21 +2025,22 @@ public class ACOPlanner {
      * Avanza la simulación exactamente 1 minuto y devuelve el tiempo actual.
      * Debe ejecutar TODO lo que haces en cada iteración de tu while(tiempoActual<max).
      */
-    public int stepOneMinute(Map<Integer, List<Pedido>> pedidosPorTiempo) {
-        if (currentTime >= maxTime) return currentTime;
+    public int stepOneMinute() {
+        if (currentTime >= maxTime || prediccionColapso.debeAbortar()) return currentTime;
+        if (lineaTiempo == null) prepararPedidos();
         // --- Aquí copia el cuerpo de un minuto de simularDiaADia, usando currentTime ---
         // p.ej.
         int tiempoActual = currentTime;
         boolean replanificar = (currentTime == 0);
+        relojMovimiento = tiempoActual - 1;   // aún no se han dado los pasos de este minuto
         // recarga de tanques intermedios
         // al inicio de cada día (t%1440==0)
         if (currentTime > 0 && currentTime % 1440 == 0) {
-            for (Tanque tq : tanquesIntermedios) {
-                tq.disponible = tq.capacidadTotal;
-            }
-            System.out.printf("🔁 t+%d: Tanques intermedios recargados a %.1f m³ cada uno%n",
-                    tiempoActual,
-                    tanquesIntermedios.get(0).capacidadTotal);
+            instalaciones.recargarTanques();
+            if (!instalaciones.getTanques().isEmpty())
+                salida.printf("🔁 t+%d: Tanques intermedios recargados a %.1f m³ cada uno%n",
+                        tiempoActual,
+                        instalaciones.getTanques().get(0).getCapacidadTotal());
         }
 
         // 0) Procesar eventos de entrega programados para este minuto
@@ -1043,66 +2048,59 @@ public class ACOPlanner {
         while (itEv.hasNext()) {
             EntregaEvent ev = itEv.next();
             if (ev.time == tiempoActual) {
-                System.out.println("▶▶▶ disparando eventoEntrega para Pedido "+ ev.pedido.id);
+                salida.println("▶▶▶ disparando eventoEntrega para Pedido "+ ev.pedido.id);
                 // 1) Guardar capacidad previa
-                double antes = ev.camion.getDisponible();
+                long antes = ev.camion.getDisponibleFijo();
                 // 2) Actualizar posición y liberar al camión
                 ev.camion.setX(ev.pedido.x);
                 ev.camion.setY(ev.pedido.y);
                 ev.camion.setLibreEn(tiempoActual + 15);// 15 minutos de servicio tras descarga
                 // 3) Descontar volumen
-                double disponibleAntes = ev.camion.getDisponible();
+                long disponibleAntes = ev.camion.getDisponibleFijo();
                 if (disponibleAntes >= ev.pedido.volumen) {
-                    ev.camion.setDisponible(disponibleAntes - ev.pedido.volumen);
+                    ev.camion.setDisponibleFijo(disponibleAntes - ev.pedido.volumen);
                 } else {
-                    System.out.printf("⚠️ Pedido #%d *no* entregado con %s en t+%d: capacidad insuficiente (%.1f < %.1f)%n",
+                    salida.printf("⚠️ Pedido #%d *no* entregado con %s en t+%d: capacidad insuficiente (%.1f < %.1f)%n",
                             ev.pedido.id, ev.camion.getId(), ev.time,
-                            disponibleAntes, ev.pedido.volumen);
+                            Volumen.aM3(disponibleAntes), ev.pedido.getVolumen());
                     // opcional: reenqueue el pedido o lanzar excepción según tu lógica
                 }
 
                 // 4) Marcar pedido entregado
                 ev.pedido.setAtendido(true);
                 // 5) Log de entrega
-                System.out.printf(
+                salida.printf(
                         "✅ t+%d: Pedido #%d completado por Camión %s en (%d,%d); capacidad: %.1f→%.1f m³%n",
                         tiempoActual, ev.pedido.id, ev.camion.getId(),
                         ev.pedido.x, ev.pedido.y,
-                        antes, ev.camion.getDisponible()
+                        Volumen.aM3(antes), ev.camion.getDisponible()
                 );
                 itEv.remove();
+                versionCalendario++; versionFlota++; versionPedidos++;
 
                 // 6) Iniciar retorno
-                double falta = ev.camion.getCapacidad() - ev.camion.getDisponible();
+                long falta = ev.camion.getCapacidadFijo() - ev.camion.getDisponibleFijo();
                 int sx = ev.camion.getX(), sy = ev.camion.getY();
 
-                // 6.a) Distancia al depósito principal
-                int dxPlant = depositoX, dyPlant = depositoY;
-                int distMin = Math.abs(sx - dxPlant) + Math.abs(sy - dyPlant);
-                Tanque mejor = null;
-
-                // 6.b) Comprueba cada tanque intermedio con suficiente volumen
-                for (Tanque tq : tanquesIntermedios) {
-                    if (tq.disponible >= falta) {
-                        int dist = Math.abs(sx - tq.x) + Math.abs(sy - tq.y);
-                        if (dist < distMin) {
-                            distMin = dist;
-                            mejor = tq;
-                        }
-                    }
+                // 6.a) Tanque con stock o planta más cercanos, del mapa de la época de bloqueos actual.
+                //      El volumen se reserva ya en el tanque; si otro plan se adelantó, se vuelve a elegir.
+                int destino;
+                Tanque mejor;
+                Tanque.Reserva reserva = null;
+                do {
+                    destino = instalaciones.elegirRetorno(sx, sy, falta, tiempoActual);
+                    mejor = instalaciones.tanque(destino);
+                } while (mejor != null && (reserva = mejor.reservar(falta)) == null);
+                int distMin = instalaciones.distancia(destino, sx, sy);
+                if (mejor != null) {
+                    salida.printf("🔁 t+%d: Tanque (%d,%d) reservado %.1fm³ → ahora %.1f m³%n",
+                            tiempoActual, mejor.x, mejor.y, Volumen.aM3(falta), mejor.getDisponible());
                 }
 
                 // 6.c) Fija destino de retorno (tanque seleccionado o planta si mejor==null)
-                int destX = (mejor != null ? mejor.x : dxPlant);
-                int destY = (mejor != null ? mejor.y : dyPlant);
-                ev.camion.reabastecerEnTanque = mejor;
-
-                // 📌 RESERVA AQUÍ EL COMBUSTIBLE
-                if (mejor != null) {
-                    mejor.disponible -= falta;
-                    System.out.printf("🔁 t+%d: Tanque (%d,%d) reservado %.1fm³ → ahora %.1f m³%n",
-                            tiempoActual, mejor.x, mejor.y, falta, mejor.disponible);
-                }
+                int destX = instalaciones.x(destino);
+                int destY = instalaciones.y(destino);
+                ev.camion.reservaTanque = reserva;
 
                 // 6.d) Marca el camión en modo retorno
                 ev.camion.setEnRetorno(true);
@@ -1117,214 +2115,82 @@ public class ACOPlanner {
                 List<Point> returnPath = buildManhattanPath(sx, sy, destX, destY, tiempoActual);
                 ev.camion.setRuta(returnPath);
                 ev.camion.appendToHistory(returnPath);
+                programarLlegada(ev.camion);
 
-                System.out.printf("⏱️ t+%d: Camión %s inicia retorno a %s (dist=%d)%n",
+                salida.printf("⏱️ t+%d: Camión %s inicia retorno a %s (dist=%d)%n",
                         tiempoActual, ev.camion.getId(),
                         (mejor != null ? "tanque intermedio" : "planta principal"),
                         distMin);
 
             }
         }
+        // Los camiones avanzan solos con el reloj: ya se dieron los pasos de este minuto
+        relojMovimiento = tiempoActual;
         // <<< aquí: reabastecimiento automático al llegar a planta >>>
-        for (Camion c : flota) {
-            // Si aún tiene pasos (ida o retorno), avanza un paso Manhattan
-            if (c.tienePasosPendientes()) {
-                c.avanzarUnPaso();
-                System.out.printf("→ Camión %s avanza a (%d,%d)%n", c.getId(), c.getX(), c.getY());
-            }
-            // Si acaba de completar todos los pasos y estaba en retorno, recarga
-            else if (c.getStatus() == Camion.TruckStatus.RETURNING) {
-                // → Lógica de recarga en tanque o planta (idéntica a la tuya)
-                double falta = c.getCapacidad() - c.getDisponible();
-                Tanque tq = c.reabastecerEnTanque;
-                if (tq != null) {
-                    // la reserva ya se hizo antes, solo reportamos
-                    // tq.disponible -= falta;
-                    System.out.printf("🔄 t+%d: Camión %s llegó a tanque (%d,%d) y recargado a %.1f m³%n", tiempoActual, c.getId(), tq.x, tq.y, c.getCapacidad());
-                    System.out.printf("🔁      Tanque (%d,%d) quedó con %.1f m³%n", tq.x, tq.y, tq.disponible);
-                } else {
-                    System.out.printf("🔄 t+%d: Camión %s llegó a planta (%d,%d) y recargado a %.1f m³%n", tiempoActual, c.getId(), depositoX, depositoY, c.getCapacidad());
-                }
-                c.setDisponible(c.getCapacidad());
-                c.setCombustibleDisponible( c.getCapacidadCombustible() );
-                c.setEnRetorno(false);
-                c.reabastecerEnTanque = null;
-                c.setStatus(Camion.TruckStatus.AVAILABLE);
-                c.setLibreEn(tiempoActual + 15);
+        for (Camion c : llegadasDelMinuto(tiempoActual)) {
+            // → Recarga en tanque (consume la reserva hecha al salir) o en planta
+            Tanque.Reserva reserva = c.reservaTanque;
+            if (reserva != null) {
+                Tanque tq = reserva.getTanque();
+                tq.confirmar(reserva);
+                salida.printf("🔄 t+%d: Camión %s llegó a tanque (%d,%d) y recargado a %.1f m³%n", tiempoActual, c.getId(), tq.x, tq.y, c.getCapacidad());
+                salida.printf("🔁      Tanque (%d,%d) quedó con %.1f m³%n", tq.x, tq.y, tq.getDisponible());
+            } else {
+                salida.printf("🔄 t+%d: Camión %s llegó a planta (%d,%d) y recargado a %.1f m³%n", tiempoActual, c.getId(), c.retDestX, c.retDestY, c.getCapacidad());
             }
+            c.setDisponibleFijo(c.getCapacidadFijo());
+            c.setCombustibleFijo(c.getCapacidadCombustibleFijo());
+            c.setEnRetorno(false);
+            c.reservaTanque = null;
+            c.setStatus(Camion.TruckStatus.AVAILABLE);
+            c.setLibreEn(tiempoActual + 15);
+            versionCalendario++; versionFlota++;
         }
 
         // 1. Nuevo pedido
-        List<Pedido> nuevos = pedidosPorTiempo.getOrDefault(tiempoActual, Collections.emptyList());
-        for (Pedido p : nuevos) {
-            System.out.printf("🆕 t+%d: Pedido #%d recibido (destino=(%d,%d), vol=%.1fm³, límite t+%d)%n",
-                    tiempoActual, p.id, p.x, p.y, p.volumen, p.tiempoLimite);
+        int primerNuevo = lineaTiempo.liberarHasta(tiempoActual);
+        for (int i = primerNuevo; i < lineaTiempo.getCursor(); i++) {
+            Pedido p = lineaTiempo.get(i);
+            salida.printf("🆕 t+%d: Pedido #%d recibido (destino=(%d,%d), vol=%.1fm³, límite t+%d)%n",
+                    tiempoActual, p.id, p.x, p.y, p.getVolumen(), p.tiempoLimite);
+            indicePedidos.liberar(p);
+            vigia.agregar(p);
+            colaAdmision.agregar(p);
         }
-        if (!nuevos.isEmpty()) replanificar = true;
-
-        // 2. Vencimientos → colapso
-        for (Pedido p : pedidos) {
-            if (!p.atendido && !p.descartado && tiempoActual > p.tiempoLimite) {
-                System.out.printf("💥 Colapso en t+%d, pedido %d incumplido%n", tiempoActual, p.id);
-                return currentTime;
-            }
+        if (lineaTiempo.getCursor() > primerNuevo) { replanificar = true; versionPedidos++; }
+
+        // 2. Vencimientos → colapso (solo se mira la cabeza del vigilante de plazos)
+        if (vigia.hayVencidos(tiempoActual)) {
+            colapsoEn = tiempoActual;
+            salida.printf("💥 Colapso en t+%d, pedido %d incumplido%n", tiempoActual, vigia.primero().id);
+            informarPrediccion();
+            return currentTime;
         }
 
-        // 3. Averías
-        String turnoActual = turnoDeMinuto(tiempoActual);
-        if (!turnoActual.equals(turnoAnterior)) {
-            turnoAnterior = turnoActual;
-            averiasAplicadas.clear(); camionesInhabilitados.clear();
-        }
-        Map<String, String> averiasTurno = averiasPorTurno.getOrDefault(turnoActual, Collections.emptyMap());
-        for (Map.Entry<String, String> entry : averiasTurno.entrySet()) {
-            String key = turnoActual + "_" + entry.getKey();
-            if (averiasAplicadas.contains(key)) continue;
-            Camion c = findCamion(entry.getKey());
-            if (c != null && c.getLibreEn() <= tiempoActual) {
-                int penal = entry.getValue().equals("T1") ? 30 : entry.getValue().equals("T2") ? 60 : 90;
-                c.setLibreEn(tiempoActual + penal);
-                // c.setStatus(Camion.TruckStatus.WAITING);
-                averiasAplicadas.add(key);
-                camionesInhabilitados.add(c.getId());
-                replanificar = true;
-                System.out.printf("🚨 t+%d: Camión %s sufre avería tipo %s, inhabilitado por %d min%n",
-                        tiempoActual, c.getId(), entry.getValue(), penal);
-            }
-        }
-        // liberar camiones que se recuperaron de averias
-        Iterator<String> it = camionesInhabilitados.iterator();
-        while (it.hasNext()) {
-            Camion c = findCamion(it.next());
-            if (c != null && c.getLibreEn() <= tiempoActual) { it.remove(); replanificar = true; }
-        }
+        // 3. Averías: inicios y recuperaciones vencidos del calendario compilado
+        if (calendarioAverias.procesarHasta(tiempoActual)) { replanificar = true; versionFlota++; }
 
-        // 4. Actualizar estado real de la flota, incluyendo DELIVERING para probar desvíos
-        List<CamionEstado> flotaEstado = flota.stream()
-                .filter(c -> c.getStatus() == Camion.TruckStatus.AVAILABLE)
-                .map(c -> {
-                    CamionEstado est = new CamionEstado();
-                    est.id = c.getId();
-                    est.posX = c.getX();
-                    est.posY = c.getY();
-                    est.capacidadDisponible = c.getDisponible();
-                    est.tiempoLibre = c.getLibreEn();
-                    est.tara = c.getTara();
-                    est.combustibleDisponible = c.getCombustibleDisponible();
-                    return est;
-                })
-                .collect(Collectors.toList());
-        // 5. Replanificación VRP con ACO
-        // ——————————————————————————————
-        // 5.1) Mapa de entrega actual
-        Map<Pedido,Integer> entregaActual = new HashMap<>();
-        for (EntregaEvent ev : eventosEntrega) {
-            entregaActual.put(ev.pedido, ev.time);
-        }
-        // 5.2) Pedidos pendientes de atender (solo los NO programados aún)
-        List<Pedido> pendientes = pedidos.stream()
-                .filter(p -> !p.atendido
-                        && !p.descartado
-                        && !p.programado   // ← filtramos los que ya fueron asignados
-                        && p.tiempoCreacion <= tiempoActual)
-                .collect(Collectors.toList());
-
-
-        // 5.3) Identificar candidatos a reasignar
-        // DESPUÉS: forzamos que TODOS los pendientes sean candidatos
-        List<Pedido> candidatos = new ArrayList<>();
-
-        for (Pedido p : pendientes) {
-            // 🔴 Nuevo: forzar inclusión si faltan menos de 60 minutos
-            if (tiempoActual + 60 >= p.tiempoLimite) {
-                candidatos.add(p);
-                continue;
-            }
-            Integer tPrev = entregaActual.get(p);
-            if (tPrev == null) {
-                // nunca asignado → candidato
-                candidatos.add(p);
-            } else {
-                // ya asignado: ¿algún otro camión podría hacerlo antes?
-                int mejorAlt = tPrev;
-                for (CamionEstado est : flotaEstado) {
-                    if (est.capacidadDisponible < p.volumen) continue;
-                    int dt = Math.abs(est.posX - p.x) + Math.abs(est.posY - p.y);
-                    int llegada = tiempoActual + dt;
-                    if (llegada < mejorAlt) mejorAlt = llegada;
-                }
-                if (mejorAlt < tPrev) {
-                    candidatos.add(p);
-                }
-            }
-        }
-        // ←――――――――――――――――――――――――――――――――
-        // NUEVO: excluir pedidos con entrega próxima (<=1 min)
-        candidatos.removeIf(p -> {
-            Integer entregaMin = entregaActual.get(p);
-            return entregaMin != null && entregaMin - tiempoActual <= 1;
-        });
-        // ―――――――――――――――――――――――――――――――――→
-
-        // 5.4) Si hay candidatos y toca replanificar, solo ellos
-        if (replanificar && !candidatos.isEmpty()) {
-            System.out.printf("⏲️ t+%d: Replanificando, candidatos = %s%n",
-                    tiempoActual, candidatos.stream().map(p->p.id).collect(Collectors.toList()));
-            // ——— A ———  cancelar cualquier eventoEntrega pendiente de esos candidatos
-            // eventosEntrega.removeIf(ev -> candidatos.contains(ev.pedido));
-            Set<Integer> idsCandidatos = candidatos.stream().map(p->p.id).collect(toSet());
-            eventosEntrega.removeIf(ev -> idsCandidatos.contains(ev.pedido.id));
-            // ——— B ———  desprogramar los pedidos para que puedan reasignarse
-            for (Pedido p : candidatos) p.programado = false;
-            List<Ruta> rutas = ejecutarACO(candidatos, flotaEstado, tiempoActual);
-            System.out.printf("    → Rutas devueltas para %s%n",
-                    rutas.stream()
-                            .flatMap(r->r.pedidos.stream())
-                            .map(idx->candidatos.get(idx).id)
-                            .collect(Collectors.toList()));
-            aplicarRutas(tiempoActual, rutas, candidatos);
-        }
+        planificarMinuto(tiempoActual, replanificar);
         // ---------------------------------------------------------------
-        return ++currentTime;
+        ++currentTime;
+        puntoControlSiToca(tiempoActual);
+        return currentTime;
     }
     public boolean isFinished() {
-        return currentTime >= maxTime;
+        return currentTime >= maxTime || prediccionColapso.debeAbortar();
     }
     /**
-     * Inicializa la flota con capacidad de carga, tara y capacidad de combustible.
+     * Carga la flota del fichero flota.txt (o la flota por defecto) en el registro; cada
+     * camión mueve su posición con el reloj de la simulación.
      */
     private List<Camion> inicializarFlota() {
-        List<Camion> flota = new ArrayList<>();
-
-        // TA: 2 camiones de 25 m³ - tara 7500 kg - combustible 100 galones
-        flota.add(new Camion("TA01", 25.0, 7500, 25.0));
-        flota.add(new Camion("TA02", 25.0, 7500, 25.0));
-
-        // TB: 4 camiones de 15 m³ - tara 5000 kg - combustible 80 galones
-        flota.add(new Camion("TB01", 15.0, 5000, 25.0));
-        flota.add(new Camion("TB02", 15.0, 5000, 25.0));
-        flota.add(new Camion("TB03", 15.0, 5000, 25.0));
-        flota.add(new Camion("TB04", 15.0, 5000, 25.0));
-
-        // TC: 4 camiones de 10 m³ - tara 4000 kg - combustible 60 galones
-        flota.add(new Camion("TC01", 10.0, 4000, 25.0));
-        flota.add(new Camion("TC02", 10.0, 4000, 25.0));
-        flota.add(new Camion("TC03", 10.0, 4000, 25.0));
-        flota.add(new Camion("TC04", 10.0, 4000, 25.0));
-
-        // TD: 10 camiones de 5 m³ - tara 3000 kg - combustible 40 galones
-        for (int i = 1; i <= 10; i++)
-            flota.add(new Camion(String.format("TD%02d", i), 5.0, 3000, 25.0));
+        registroFlota = RegistroFlota.cargar("flota.txt", instalaciones.getPlantaPrincipal());
+        List<Camion> flota = registroFlota.getCamiones();
+        for (Camion c : flota) c.setReloj(() -> relojMovimiento);
         return flota;
     }
 
 
-    private String turnoDeMinuto(int t) {
-        int minutoDia = t % 1440;
-        if (minutoDia < 480) return "T1";
-        else if (minutoDia < 960) return "T2";
-        else return "T3";
-    }
     public static List<Pedido> cargarPedidos(String archivo) {
         List<Pedido> lista = new ArrayList<>();
         try (BufferedReader br = new BufferedReader(new FileReader(archivo))) {
@@ -1337,9 +2203,10 @@ public class ACOPlanner {
                     String[] datos = partes[1].split(",");
                     int x = Integer.parseInt(datos[0].trim());
                     int y = Integer.parseInt(datos[1].trim());
+                    String cliente = datos[2].trim();
                     double vol = Double.parseDouble(datos[3].replace("m3", "").trim());
                     int limite = tiempo + convertirATiempoMinutos(datos[4].trim());
-                    lista.add(new Pedido(id++, tiempo, x, y, vol, limite));
+                    lista.add(new Pedido(id++, tiempo, x, y, vol, limite, cliente));
                 } catch (Exception e) {
                     System.out.println("❌ Error en línea de pedido: " + linea);
                 }
@@ -1351,6 +2218,7 @@ public class ACOPlanner {
     }
     public void setPedidos(List<Pedido> nuevasListas) {
         this.pedidos = new ArrayList<>(nuevasListas);
+        indexarPedidos();
     }
     public static List<Bloqueo> cargarBloqueos(String archivo) {
         List<Bloqueo> lista = new ArrayList<>();
@@ -1467,7 +2335,7 @@ public class ACOPlanner {
             setVisible(true);
         }
 
-        public void render(int t, List<Pedido> pedidos, List<Camion> camiones, List<Bloqueo> bloqueos, int depositoX, int depositoY) {
+        public void render(int t, Iterable<Pedido> pedidos, List<Camion> camiones, List<Bloqueo> bloqueos, int depositoX, int depositoY) {
             for (char[] row : grid) Arrays.fill(row, '.');
             for (Pedido p : pedidos)
                 if (p.x >= 0 && p.x < ancho && p.y >= 0 && p.y < alto)
@@ -0,0 +1,46 @@
+package core;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generador pseudoaleatorio del ACO (splitmix64). Todo su estado es un long, así que se
+ * guarda en un punto de control y se copia a una bifurcación. Cada colonia sortea con su
+ * propio generador, derivado de este con {@link #derivar} en el hilo que la lanza y en un
+ * orden fijo; así las colonias de regiones en paralelo no se pisan y, con el mismo estado,
+ * se repiten los mismos sorteos. Lo que depende del reloj real no se repite: la K del
+ * control de admisión, que sigue la latencia medida, y el minuto en que llega un plan
+ * asíncrono.
+ */
+final class Aleatorio {
+    private static final long GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final AtomicLong estado;
+
+    Aleatorio(long semilla) {
+        this.estado = new AtomicLong(semilla);
+    }
+
+    /** Siguiente double uniforme en [0, 1). */
+    double siguiente() {
+        return (mezclar(estado.addAndGet(GAMMA)) >>> 11) * 0x1.0p-53;
+    }
+
+    /** Generador independiente para una colonia: su semilla es la siguiente salida de este. */
+    Aleatorio derivar() {
+        return new Aleatorio(mezclar(estado.addAndGet(GAMMA)));
+    }
+
+    private static long mezclar(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    long getEstado() {
+        return estado.get();
+    }
+
+    void setEstado(long estado) {
+        this.estado.set(estado);
+    }
+}
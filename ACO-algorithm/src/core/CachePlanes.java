@@ -0,0 +1,186 @@
+package core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caché LRU de planes del ACO. Tras una avería o una liberación que no cambia nada se repite
+ * el mismo subproblema (mismos pedidos, mismos camiones libres en las mismas posiciones); en
+ * ese caso se reutiliza el plan ya calculado y no se vuelve a ejecutar el ACO.
+ *
+ * La clave es una firma canónica de 64 bits: pedidos se ordenan por id y camiones por índice, y los
+ * tiempos entran relativos al minuto actual y agrupados en cubetas de {@link #CUBETA_MINUTOS}.
+ * El plan guarda cada pedido por su posición en ese orden canónico y no por id: los trozos de
+ * un pedido fraccionado ({@code id*100+i}) pueden repetir el id de otro pedido.
+ * Un acierto reconstruye las rutas con {@link ACOPlanner#asignarPedido} sobre el estado
+ * actual; si algún pedido ya no es factible la entrada se descarta y cuenta como fallo.
+ */
+class CachePlanes {
+    static final int CAPACIDAD_POR_DEFECTO = 32;
+    static final int CUBETA_MINUTOS = 5;
+
+    /** Plan guardado por índice de camión y posición canónica del pedido: camiones[i] atiende pedidos[i] en ese orden. */
+    private static final class PlanCacheado {
+        final int[] camiones;
+        final int[][] pedidos;
+
+        PlanCacheado(int[] camiones, int[][] pedidos) {
+            this.camiones = camiones;
+            this.pedidos = pedidos;
+        }
+    }
+
+    private final Map<Long, PlanCacheado> planes;
+
+    CachePlanes(int capacidad) {
+        // LinkedHashMap en orden de acceso: el primero es siempre el menos usado
+        this.planes = new LinkedHashMap<Long, PlanCacheado>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, PlanCacheado> mayor) {
+                return size() > capacidad;
+            }
+        };
+    }
+
+    /**
+     * Índices de {@code pedidos} en orden canónico: por id y, a igualdad de id, por límite,
+     * posición y volumen. Dos pedidos que empatan en todo son intercambiables.
+     */
+    private static Integer[] ordenCanonico(List<Pedido> pedidos) {
+        Integer[] orden = new Integer[pedidos.size()];
+        for (int i = 0; i < orden.length; i++) orden[i] = i;
+        Arrays.sort(orden, Comparator.comparingInt((Integer i) -> pedidos.get(i).id)
+                .thenComparingInt(i -> pedidos.get(i).tiempoLimite)
+                .thenComparingInt(i -> pedidos.get(i).x)
+                .thenComparingInt(i -> pedidos.get(i).y)
+                .thenComparingLong(i -> pedidos.get(i).volumen));
+        return orden;
+    }
+
+    /** Firma canónica del subproblema (independiente del orden de pedidos y camiones). */
+    static long firma(List<Pedido> pedidos, List<ACOPlanner.CamionEstado> flota, int tiempoActual) {
+        List<Pedido> ps = new ArrayList<>();
+        for (int i : ordenCanonico(pedidos)) ps.add(pedidos.get(i));
+        List<ACOPlanner.CamionEstado> cs = new ArrayList<>(flota);
+        cs.sort((a, b) -> Integer.compare(a.indice, b.indice));
+
+        long h = mezclar(0x2545F4914F6CDD1DL + ps.size() * 31L + cs.size());
+        for (Pedido p : ps) {
+            h = combinar(h, p.id);
+            h = combinar(h, p.x * 1024L + p.y);
+            h = combinar(h, p.volumen);
+            h = combinar(h, Math.floorDiv(p.tiempoLimite - tiempoActual, CUBETA_MINUTOS));
+        }
+        for (ACOPlanner.CamionEstado c : cs) {
+            h = combinar(h, c.indice);
+            h = combinar(h, c.posX * 1024L + c.posY);
+            h = combinar(h, c.capacidadDisponible);
+            h = combinar(h, c.combustibleDisponible);
+            h = combinar(h, Double.doubleToLongBits(c.tara));
+            h = combinar(h, Math.max(0, c.tiempoLibre - tiempoActual) / CUBETA_MINUTOS);
+        }
+        return h;
+    }
+
+    private static long combinar(long h, long valor) {
+        return mezclar(h ^ (valor * 0x9E3779B97F4A7C15L));
+    }
+
+    private static long mezclar(long z) {   // finalizador de splitmix64
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Reconstruye el plan guardado con esa firma sobre el estado dado, con una ruta por
+     * camión como {@link ACOPlanner#ejecutarACO}. Devuelve null si no está o ya no es factible.
+     */
+    synchronized List<ACOPlanner.Ruta> buscar(long firma, List<Pedido> pedidos,
+                                              List<ACOPlanner.CamionEstado> flota, int tiempoActual) {
+        PlanCacheado plan = planes.get(firma);
+        if (plan == null) return null;
+
+        Integer[] orden = ordenCanonico(pedidos);
+        List<ACOPlanner.Ruta> rutas = new ArrayList<>();
+        Map<Integer, ACOPlanner.Ruta> rutaPorCamion = new HashMap<>();
+        for (ACOPlanner.CamionEstado est : ACOPlanner.deepCopyFlota(flota)) {
+            ACOPlanner.Ruta r = new ACOPlanner.Ruta();
+            r.estadoCamion = est;
+            rutas.add(r);
+            rutaPorCamion.put(est.indice, r);
+        }
+        for (int k = 0; k < plan.camiones.length; k++) {
+            ACOPlanner.Ruta r = rutaPorCamion.get(plan.camiones[k]);
+            for (int pos : plan.pedidos[k]) {
+                if (r == null || pos >= orden.length
+                        || !ACOPlanner.asignarPedido(r, orden[pos], pedidos.get(orden[pos]), tiempoActual)) {
+                    planes.remove(firma);
+                    return null;
+                }
+            }
+        }
+        return rutas;
+    }
+
+    /** Guarda el plan devuelto por el ACO para el subproblema con esa firma. */
+    synchronized void guardar(long firma, List<Pedido> pedidos, List<ACOPlanner.Ruta> rutas) {
+        Integer[] orden = ordenCanonico(pedidos);
+        int[] posicion = new int[orden.length];
+        for (int pos = 0; pos < orden.length; pos++) posicion[orden[pos]] = pos;
+        int[] camiones = new int[rutas.size()];
+        int k = 0;
+        List<int[]> secuencias = new ArrayList<>();
+        for (ACOPlanner.Ruta r : rutas) {
+            if (r.pedidos.isEmpty()) continue;
+            int[] posiciones = new int[r.pedidos.size()];
+            for (int i = 0; i < posiciones.length; i++) posiciones[i] = posicion[r.pedidos.get(i)];
+            camiones[k++] = r.estadoCamion.indice;
+            secuencias.add(posiciones);
+        }
+        planes.put(firma, new PlanCacheado(Arrays.copyOf(camiones, k), secuencias.toArray(new int[0][])));
+    }
+
+    /** Escribe los planes del menos al más usado, para un punto de control. */
+    synchronized void escribir(DataOutput out) throws IOException {
+        out.writeInt(planes.size());
+        for (Map.Entry<Long, PlanCacheado> e : planes.entrySet()) {
+            out.writeLong(e.getKey());
+            PlanCacheado plan = e.getValue();
+            out.writeInt(plan.camiones.length);
+            for (int k = 0; k < plan.camiones.length; k++) {
+                out.writeInt(plan.camiones[k]);
+                out.writeInt(plan.pedidos[k].length);
+                for (int pos : plan.pedidos[k]) out.writeInt(pos);
+            }
+        }
+    }
+
+    /** Sustituye el contenido por lo escrito con {@link #escribir}, con el mismo orden LRU. */
+    synchronized void leer(DataInput in) throws IOException {
+        planes.clear();
+        for (int n = in.readInt(); n > 0; n--) {
+            long firma = in.readLong();
+            int[] camiones = new int[in.readInt()];
+            int[][] pedidos = new int[camiones.length][];
+            for (int k = 0; k < camiones.length; k++) {
+                camiones[k] = in.readInt();
+                pedidos[k] = new int[in.readInt()];
+                for (int i = 0; i < pedidos[k].length; i++) pedidos[k][i] = in.readInt();
+            }
+            planes.put(firma, new PlanCacheado(camiones, pedidos));
+        }
+    }
+
+    synchronized void clear() {
+        planes.clear();
+    }
+}
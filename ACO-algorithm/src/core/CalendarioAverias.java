@@ -0,0 +1,219 @@
+package core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Calendario de averías compilado: cada entrada de averias.txt (o de la GUI) queda como
+ * camión por índice en la flota, minuto de inicio del turno y minutos de penalización.
+ * Los inicios de avería y las recuperaciones se guardan como eventos en un montículo por
+ * minuto, así que la simulación solo mira el calendario cuando toca algún evento.
+ *
+ * Una avería se aplica en el primer minuto de su turno en que el camión está libre; si no
+ * llega a estarlo antes de que acabe el turno, esa avería no se aplica ese día.
+ *
+ * Una simulación bifurcada copia el calendario ({@link #bifurcar}): son unos pocos arrays
+ * del tamaño de las averías y de la flota.
+ */
+class CalendarioAverias {
+    static final int DURACION_TURNO = 480;
+    private static final long RECUPERACION = 1L << 31;
+
+    private int n;
+    private int[] camion = new int[8];        // índice del camión en la flota
+    private int[] inicioTurno = new int[8];   // minuto del día en que empieza el turno (0, 480, 960)
+    private int[] penal = new int[8];         // minutos inhabilitado
+    private String[] tipo = new String[8];
+    private int[] inicioActual = new int[8];  // inicio del turno de la ocurrencia pendiente
+    private int[] recuperacionEn;             // por camión: minuto de recuperación vigente, -1 si ninguna
+    private final RegistroFlota registro;
+    // clave = minuto << 32 | (RECUPERACION si lo es) | entrada o camión
+    private final PriorityQueue<Long> eventos;
+    PrintStream salida = System.out;
+
+    /** Compila las averías por turno ("T1" → camión → tipo) contra los índices de la flota. */
+    CalendarioAverias(Map<String, Map<String, String>> averiasPorTurno, RegistroFlota registro) {
+        this.registro = registro;
+        this.eventos = new PriorityQueue<>();
+        this.recuperacionEn = new int[registro.size()];
+        Arrays.fill(recuperacionEn, -1);
+        for (Map.Entry<String, Map<String, String>> turno : averiasPorTurno.entrySet()) {
+            for (Map.Entry<String, String> a : turno.getValue().entrySet()) {
+                agregar(turno.getKey(), a.getKey(), a.getValue(), 0);
+            }
+        }
+    }
+
+    private CalendarioAverias(CalendarioAverias base, RegistroFlota registro) {
+        this.registro = registro;
+        this.n = base.n;
+        this.camion = base.camion.clone();
+        this.inicioTurno = base.inicioTurno.clone();
+        this.penal = base.penal.clone();
+        this.tipo = base.tipo.clone();
+        this.inicioActual = base.inicioActual.clone();
+        this.recuperacionEn = base.recuperacionEn.clone();
+        this.eventos = new PriorityQueue<>(base.eventos);
+    }
+
+    /** Copia del calendario en este punto, sobre el registro de flota de la bifurcación. */
+    CalendarioAverias bifurcar(RegistroFlota registro) {
+        return new CalendarioAverias(this, registro);
+    }
+
+    /** Escribe entradas, recuperaciones vigentes y eventos pendientes para un punto de control. */
+    void escribir(DataOutput out) throws IOException {
+        out.writeInt(n);
+        for (int e = 0; e < n; e++) {
+            out.writeInt(camion[e]);
+            out.writeInt(inicioTurno[e]);
+            out.writeInt(penal[e]);
+            out.writeUTF(tipo[e]);
+            out.writeInt(inicioActual[e]);
+        }
+        out.writeInt(recuperacionEn.length);
+        for (int r : recuperacionEn) out.writeInt(r);
+        out.writeInt(eventos.size());
+        for (long clave : eventos) out.writeLong(clave);
+    }
+
+    static CalendarioAverias leer(DataInput in, RegistroFlota registro) throws IOException {
+        CalendarioAverias cal = new CalendarioAverias(Collections.emptyMap(), registro);
+        int n = in.readInt();
+        int cap = Math.max(8, n);
+        cal.camion = new int[cap];
+        cal.inicioTurno = new int[cap];
+        cal.penal = new int[cap];
+        cal.tipo = new String[cap];
+        cal.inicioActual = new int[cap];
+        for (int e = 0; e < n; e++) {
+            cal.camion[e] = in.readInt();
+            cal.inicioTurno[e] = in.readInt();
+            cal.penal[e] = in.readInt();
+            cal.tipo[e] = in.readUTF();
+            cal.inicioActual[e] = in.readInt();
+        }
+        cal.n = n;
+        cal.recuperacionEn = new int[in.readInt()];
+        for (int v = 0; v < cal.recuperacionEn.length; v++) cal.recuperacionEn[v] = in.readInt();
+        for (int i = in.readInt(); i > 0; i--) cal.eventos.add(in.readLong());
+        return cal;
+    }
+
+    static int inicioDeTurno(String turno) {
+        switch (turno) {
+            case "T1": return 0;
+            case "T2": return DURACION_TURNO;
+            case "T3": return 2 * DURACION_TURNO;
+            default: return -1;
+        }
+    }
+
+    static int penalizacion(String tipo) {
+        return tipo.equals("T1") ? 30 : tipo.equals("T2") ? 60 : 90;
+    }
+
+    /**
+     * Añade (o cambia de tipo) la avería de un camión en un turno; la primera ocurrencia es
+     * la del turno que aún no ha terminado en el minuto {@code desde}.
+     */
+    void agregar(String turno, String camionId, String tipoAveria, int desde) {
+        int inicio = inicioDeTurno(turno);
+        int v = registro.indiceDe(camionId);
+        if (inicio < 0 || v < 0) return;   // turno o camión desconocido: nunca se aplicaría
+        for (int e = 0; e < n; e++) {
+            if (camion[e] == v && inicioTurno[e] == inicio) {
+                penal[e] = penalizacion(tipoAveria);
+                tipo[e] = tipoAveria;
+                return;
+            }
+        }
+        if (n == camion.length) {
+            int cap = n * 2;
+            camion = Arrays.copyOf(camion, cap);
+            inicioTurno = Arrays.copyOf(inicioTurno, cap);
+            penal = Arrays.copyOf(penal, cap);
+            tipo = Arrays.copyOf(tipo, cap);
+            inicioActual = Arrays.copyOf(inicioActual, cap);
+        }
+        int e = n++;
+        camion[e] = v;
+        inicioTurno[e] = inicio;
+        penal[e] = penalizacion(tipoAveria);
+        tipo[e] = tipoAveria;
+        int ocurrencia = Math.floorDiv(desde, 1440) * 1440 + inicio;
+        if (ocurrencia + DURACION_TURNO <= desde) ocurrencia += 1440;
+        inicioActual[e] = ocurrencia;
+        programar(Math.max(ocurrencia, desde), e);
+    }
+
+    /**
+     * Procesa los inicios de avería y recuperaciones con minuto ≤ t (los inicios antes que las
+     * recuperaciones del mismo minuto). Devuelve true si alguno cambió la disponibilidad de la flota.
+     */
+    boolean procesarHasta(int tiempoActual) {
+        boolean cambio = false;
+        while (!eventos.isEmpty() && (int) (eventos.peek() >>> 32) <= tiempoActual) {
+            long clave = eventos.poll();
+            int minuto = (int) (clave >>> 32);
+            int id = (int) (clave & (RECUPERACION - 1));
+            if ((clave & RECUPERACION) != 0) {
+                cambio |= recuperar(id, minuto, tiempoActual, registro.get(id));
+            } else {
+                cambio |= iniciar(id, tiempoActual, registro.get(camion[id]));
+            }
+        }
+        return cambio;
+    }
+
+    private boolean iniciar(int e, int tiempoActual, Camion c) {
+        int fin = inicioActual[e] + DURACION_TURNO;
+        if (tiempoActual >= fin) {                      // el turno ya pasó sin aplicarla
+            siguienteDia(e, tiempoActual);
+            return false;
+        }
+        if (c.getLibreEn() > tiempoActual) {            // ocupado: se vuelve a mirar al quedar libre
+            if (c.getLibreEn() < fin) programar(c.getLibreEn(), e);
+            else siguienteDia(e, tiempoActual);
+            return false;
+        }
+        c.setLibreEn(tiempoActual + penal[e]);
+        salida.printf("🚨 t+%d: Camión %s sufre avería tipo %s, inhabilitado por %d min%n",
+                tiempoActual, c.getId(), tipo[e], penal[e]);
+        int v = camion[e];
+        recuperacionEn[v] = tiempoActual + penal[e];
+        eventos.add(((long) recuperacionEn[v] << 32) | RECUPERACION | v);
+        siguienteDia(e, tiempoActual);
+        return true;
+    }
+
+    private boolean recuperar(int v, int minuto, int tiempoActual, Camion c) {
+        if (recuperacionEn[v] != minuto) return false;  // la sustituyó una avería posterior
+        if (c.getLibreEn() > tiempoActual) {
+            recuperacionEn[v] = c.getLibreEn();
+            eventos.add(((long) recuperacionEn[v] << 32) | RECUPERACION | v);
+            return false;
+        }
+        recuperacionEn[v] = -1;
+        return true;
+    }
+
+    private void siguienteDia(int e, int tiempoActual) {
+        inicioActual[e] += 1440;
+        programar(Math.max(inicioActual[e], tiempoActual), e);
+    }
+
+    private void programar(int minuto, int e) {
+        eventos.add(((long) minuto << 32) | e);
+    }
+
+    int size() {
+        return n;
+    }
+}
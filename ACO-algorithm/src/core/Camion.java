@@ -1,12 +1,29 @@
 package core;
 
 import java.awt.Point;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.IntSupplier;
+import java.util.function.ToIntFunction;
 
 /**
  * Representa un camión con capacidad de carga, combustible y lógica de movimiento.
+ *
+ * El movimiento es perezoso: el camión guarda su tramo (camino y minuto de salida) y la
+ * posición y el combustible se deducen del reloj de la simulación solo cuando alguien los
+ * consulta. Antes de cualquier cambio de estado los pasos ya dados se consolidan.
+ *
+ * Carga y combustible se llevan en punto fijo ({@link Volumen}: mL y microgalones); los
+ * getters y setters públicos siguen en m³ y galones.
+ *
+ * El historial es persistente: al bifurcar (ver {@link #bifurcar}) el tramo escrito hasta
+ * ese momento se congela y lo comparten original y copia; cada uno sigue escribiendo el suyo.
  */
 public class Camion {
     /** Estados del camión durante la simulación */
@@ -18,18 +35,21 @@ public class Camion {
 
     // --- Identificación y capacidades ---
     private final String id;
-    private final double capacidadCarga;       // m³ de carga útil
-    private double disponible;                 // m³ de carga restante
+    private final String tipo;                 // prefijo del id (TA, TB, TC, TD)
+    private int indice = -1;                   // posición en el RegistroFlota
+    private final long capacidadCarga;         // carga útil en punto fijo (ver Volumen)
+    private long disponible;                   // carga restante en punto fijo
     private final double tara;                 // peso en vacío (valor referencial)
     private static final double pesoTara = 2.5;
     private static final double pesoCargoPorM3 = 0.5;
 
     // --- Combustible ---
-    private final double capacidadCombustible; // galones totales
-    private double combustibleDisponible;      // galones restantes
+    private final long capacidadCombustible;   // microgalones totales
+    private long combustibleDisponible;        // microgalones restantes
 
     // --- Posición y timing ---
-    private int x = 12, y = 8;    // coordenadas actuales (depósito por defecto)
+    private final int baseX, baseY; // depósito al que vuelve en reset()
+    private int x, y;             // coordenadas actuales
     private int libreEn = 0;      // minuto en que estará libre
     private boolean enRetorno = false;
     private TruckStatus status = TruckStatus.AVAILABLE;
@@ -37,15 +57,20 @@ public class Camion {
     // --- Rutas y trayectoria ---
     private final List<Pedido> rutaPendiente = new ArrayList<>();      // pedidos aún no servidos
     private List<Point> rutaActual = Collections.emptyList();          // camino Manhattan paso a paso
-    private int pasoActual = 0;                                        // índice en rutaActual
-    private final List<Point> history = new ArrayList<>();            // recorrido histórico
+    private int pasoActual = 0;                                        // pasos ya consolidados en x, y y combustible
+    private long salidaPaso = 0;                                       // minuto en que se da el paso pasoActual
+    private int tramo = 0;                                             // cambia con cada setRuta
+    private List<Point> history = new ArrayList<>();                  // recorrido histórico desde la última bifurcación
+    private List<List<Point>> historiaCongelada = Collections.emptyList(); // tramos anteriores, inmutables y compartidos
+    private int largoCongelado = 0;
+    private IntSupplier reloj = () -> Integer.MAX_VALUE;               // último minuto cuyos pasos ya se dieron
 
     // --- Estadísticas de consumo ---
-    private double consumoAcumulado = 0.0; // combustible utilizado solo por avance
-    private double combustibleGastado = 0.0; // galones totales consumidos
+    private long consumoAcumulado = 0;     // combustible utilizado solo por avance (microgalones)
+    private long combustibleGastado = 0;   // microgalones totales consumidos
 
     // --- Para mecánica de recarga en tanque ---
-    public Tanque reabastecerEnTanque = null;
+    public Tanque.Reserva reservaTanque = null;
     int retHora = 0, retStartX = 0, retStartY = 0, retDestX = 0, retDestY = 0;
 
     /**
@@ -54,16 +79,141 @@ public class Camion {
      * @param capacidadCarga     Capacidad de carga en m³
      * @param tara               Peso en vacío
      * @param capacidadCombustible Capacidad de combustible en galones
+     * @param baseX              Columna del depósito donde empieza y al que vuelve en reset()
+     * @param baseY              Fila de ese depósito
      */
-    public Camion(String id, double capacidadCarga, double tara, double capacidadCombustible) {
+    public Camion(String id, double capacidadCarga, double tara, double capacidadCombustible, int baseX, int baseY) {
         this.id = id;
-        this.capacidadCarga = capacidadCarga;
+        this.tipo = id.replaceAll("\\d+$", "");
+        this.capacidadCarga = Volumen.deM3(capacidadCarga);
         this.tara = tara;
-        this.capacidadCombustible = capacidadCombustible;
-        this.combustibleDisponible  = capacidadCombustible;
+        this.capacidadCombustible = Volumen.deGalones(capacidadCombustible);
+        this.baseX = baseX;
+        this.baseY = baseY;
         reset();
     }
 
+    /**
+     * Copia para una simulación bifurcada, con su propio reloj. La ruta actual se comparte
+     * (no se modifica tras {@link #setRuta}) y el historial se congela y se comparte; los
+     * pedidos pendientes y la reserva de tanque los traduce quien bifurca.
+     */
+    Camion bifurcar(IntSupplier reloj) {
+        congelarHistoria();
+        Camion c = new Camion(id, getCapacidad(), tara, getCapacidadCombustible(), baseX, baseY);
+        c.indice = indice;
+        c.disponible = disponible;
+        c.combustibleDisponible = combustibleDisponible;
+        c.x = x; c.y = y;
+        c.libreEn = libreEn;
+        c.enRetorno = enRetorno;
+        c.status = status;
+        c.rutaPendiente.addAll(rutaPendiente);
+        c.rutaActual = rutaActual;
+        c.pasoActual = pasoActual;
+        c.salidaPaso = salidaPaso;
+        c.tramo = tramo;
+        c.historiaCongelada = historiaCongelada;
+        c.largoCongelado = largoCongelado;
+        c.reloj = reloj;
+        c.consumoAcumulado = consumoAcumulado;
+        c.combustibleGastado = combustibleGastado;
+        c.reservaTanque = reservaTanque;
+        c.retHora = retHora;
+        c.retStartX = retStartX; c.retStartY = retStartY;
+        c.retDestX = retDestX; c.retDestY = retDestY;
+        return c;
+    }
+
+    /**
+     * Escribe el estado completo para un punto de control; los pedidos pendientes van como
+     * referencias ({@code ref}). La reserva de tanque la escribe el planificador.
+     */
+    void escribir(DataOutput out, ToIntFunction<Pedido> ref) throws IOException {
+        out.writeUTF(id);
+        out.writeDouble(getCapacidad());
+        out.writeDouble(tara);
+        out.writeDouble(getCapacidadCombustible());
+        out.writeInt(baseX);
+        out.writeInt(baseY);
+        out.writeInt(indice);
+        out.writeLong(disponible);
+        out.writeLong(combustibleDisponible);
+        out.writeInt(x);
+        out.writeInt(y);
+        out.writeInt(libreEn);
+        out.writeBoolean(enRetorno);
+        out.writeByte(status.ordinal());
+        out.writeInt(rutaPendiente.size());
+        for (Pedido p : rutaPendiente) out.writeInt(ref.applyAsInt(p));
+        escribirPuntos(out, rutaActual);
+        out.writeInt(pasoActual);
+        out.writeLong(salidaPaso);
+        out.writeInt(tramo);
+        escribirPuntos(out, getHistory());
+        out.writeLong(consumoAcumulado);
+        out.writeLong(combustibleGastado);
+        out.writeInt(retHora);
+        out.writeInt(retStartX);
+        out.writeInt(retStartY);
+        out.writeInt(retDestX);
+        out.writeInt(retDestY);
+    }
+
+    /** Lee un camión escrito con {@link #escribir}, con el reloj de la simulación restaurada. */
+    static Camion leer(DataInput in, IntFunction<Pedido> pedido, IntSupplier reloj) throws IOException {
+        Camion c = new Camion(in.readUTF(), in.readDouble(), in.readDouble(), in.readDouble(),
+                in.readInt(), in.readInt());
+        c.indice = in.readInt();
+        c.disponible = in.readLong();
+        c.combustibleDisponible = in.readLong();
+        c.x = in.readInt();
+        c.y = in.readInt();
+        c.libreEn = in.readInt();
+        c.enRetorno = in.readBoolean();
+        c.status = TruckStatus.values()[in.readByte()];
+        for (int i = in.readInt(); i > 0; i--) c.rutaPendiente.add(pedido.apply(in.readInt()));
+        c.rutaActual = leerPuntos(in);
+        c.pasoActual = in.readInt();
+        c.salidaPaso = in.readLong();
+        c.tramo = in.readInt();
+        c.history = leerPuntos(in);
+        c.consumoAcumulado = in.readLong();
+        c.combustibleGastado = in.readLong();
+        c.retHora = in.readInt();
+        c.retStartX = in.readInt();
+        c.retStartY = in.readInt();
+        c.retDestX = in.readInt();
+        c.retDestY = in.readInt();
+        c.reloj = reloj;
+        return c;
+    }
+
+    private static void escribirPuntos(DataOutput out, List<Point> puntos) throws IOException {
+        out.writeInt(puntos.size());
+        for (Point p : puntos) {
+            out.writeShort(p.x);
+            out.writeShort(p.y);
+        }
+    }
+
+    private static List<Point> leerPuntos(DataInput in) throws IOException {
+        int n = in.readInt();
+        List<Point> puntos = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) puntos.add(new Point(in.readShort(), in.readShort()));
+        return puntos;
+    }
+
+    /** Pasa el tramo propio del historial a los congelados; desde aquí se escribe uno nuevo. */
+    private void congelarHistoria() {
+        if (history.isEmpty()) return;
+        List<List<Point>> tramos = new ArrayList<>(historiaCongelada);
+        tramos.add(Collections.unmodifiableList(history));
+        historiaCongelada = Collections.unmodifiableList(tramos);
+        largoCongelado += history.size();
+        history = new ArrayList<>();
+    }
+
     /**
      * Vuelve el camión a su estado inicial (lleno y en depósito).
      */
@@ -72,78 +222,136 @@ public class Camion {
         this.combustibleDisponible = capacidadCombustible;
         this.consumoAcumulado = 0;
         this.combustibleGastado = 0;
-        this.x = 12; this.y = 8;
+        this.x = baseX; this.y = baseY;
         this.libreEn = 0;
         this.enRetorno = false;
         this.status = TruckStatus.AVAILABLE;
         this.rutaPendiente.clear();
         this.rutaActual = Collections.emptyList();
         this.pasoActual = 0;
-        this.history.clear();
-        this.reabastecerEnTanque = null;
+        this.salidaPaso = 0;
+        this.tramo = 0;
+        this.history = new ArrayList<>();
+        this.historiaCongelada = Collections.emptyList();
+        this.largoCongelado = 0;
+        this.reservaTanque = null;
     }
 
     /**
      * Recarga el combustible al máximo.
      */
     public void recargarCombustible() {
+        consolidar();
         this.combustibleDisponible = capacidadCombustible;
     }
 
     /**
-     * Avanza un solo paso en la ruta actual, consumiendo combustible.
+     * Reloj de la simulación: devuelve el último minuto cuyos pasos ya se dieron.
+     * Sin reloj, cada tramo se considera recorrido en cuanto se asigna.
+     */
+    public void setReloj(IntSupplier reloj) {
+        consolidar();
+        this.reloj = reloj;
+    }
+
+    /** Consumo proporcional al peso total (tara + carga) / eficiencia, en microgalones por paso. */
+    private long gastoPorPaso() {
+        double pesoTotal = pesoTara + (Volumen.aM3(disponible) * pesoCargoPorM3);
+        return Volumen.deGalones(pesoTotal / 180.0);
+    }
+
+    /** Pasos del tramo actual dados según el reloj (un paso por minuto desde la salida). */
+    private int pasosDados() {
+        long dados = (long) reloj.getAsInt() - salidaPaso + 1;
+        return pasoActual + (int) Math.max(0, Math.min(rutaActual.size() - pasoActual, dados));
+    }
+
+    /** Pasos dados y aún no reflejados en x, y y combustible. */
+    private int pasosSinConsolidar() {
+        return pasosDados() - pasoActual;
+    }
+
+    /**
+     * Lleva a x, y y combustible los pasos dados hasta ahora. Se llama antes de cualquier
+     * cambio que afecte al movimiento (carga, posición, combustible o nuevo tramo).
      */
-    public void avanzarUnPaso() {
-        if (!tienePasosPendientes()) return;
-        // Consumo proporcional al peso total (tara + carga) / eficiencia
-        double pesoTotal = pesoTara + (disponible * pesoCargoPorM3);
-        double gasto = pesoTotal / 180.0;  // galones por paso
+    private void consolidar() {
+        int k = pasosSinConsolidar();
+        if (k <= 0) return;
+        long gasto = k * gastoPorPaso();
         consumoAcumulado += gasto;
         combustibleDisponible -= gasto;
         combustibleGastado += gasto;
-        Point next = rutaActual.get(pasoActual++);
-        moverA(next);
+        Point p = rutaActual.get(pasoActual + k - 1);
+        this.x = p.x; this.y = p.y;
+        pasoActual += k;
+        salidaPaso += k;
     }
 
     /**
      * Mueve al camión a la posición p y registra en historial.
      */
     public void moverA(Point p) {
+        consolidar();
         this.x = p.x; this.y = p.y;
         history.add(new Point(x, y));
     }
 
     /**
-     * Define la ruta Manhattan de pasos a seguir.
+     * Define la ruta Manhattan de pasos a seguir; el primer paso se da en el minuto
+     * siguiente al del reloj.
      */
     public void setRuta(List<Point> ruta) {
+        consolidar();
         this.rutaActual = new ArrayList<>(ruta);
         this.pasoActual = 0;
+        this.salidaPaso = (long) reloj.getAsInt() + 1;
+        this.tramo++;
+    }
+
+    /** Identifica el tramo actual: un evento de llegada de un tramo ya sustituido es obsoleto. */
+    public int getTramo() { return tramo; }
+
+    /** Minuto en que el camión termina el tramo actual (ya dado todos sus pasos). */
+    public int getFinTramo() {
+        return (int) (salidaPaso + (rutaActual.size() - pasoActual));
     }
 
     /**
      * Añade un camino al historial (sin resetear). Ideal al comienzo.
      */
     public void appendToHistory(List<Point> path) {
-        if (history.isEmpty()) history.add(new Point(x, y));
+        if (history.isEmpty() && largoCongelado == 0) history.add(new Point(x, y));
         if (path != null) history.addAll(path);
     }
 
     // --- Checkers de ruta ---
     public boolean tienePasosPendientes() {
-        return pasoActual < rutaActual.size();
+        return pasosDados() < rutaActual.size();
     }
 
     // --- Getters y Setters ---
     public String getId() { return id; }
-    public double getCapacidad() { return capacidadCarga; }
-    public double getDisponible() { return disponible; }
-    public void setDisponible(double d) { this.disponible = d; }
+    public String getTipo() { return tipo; }
+    public int getIndice() { return indice; }
+    void setIndice(int indice) { this.indice = indice; }
+    public double getCapacidad() { return Volumen.aM3(capacidadCarga); }
+    public double getDisponible() { return Volumen.aM3(disponible); }
+    public void setDisponible(double d) { setDisponibleFijo(Volumen.deM3(d)); }
+    long getCapacidadFijo() { return capacidadCarga; }
+    long getDisponibleFijo() { return disponible; }
+    void setDisponibleFijo(long d) { consolidar(); this.disponible = d; }
     public double getTara() { return tara; }
-    public int getX() { return x; }
-    public int getY() { return y; }
-    public void setX(int x_aux) {this.x = x_aux;}
-    public void setY(int y_aux) {this.y = y_aux;}
+    public int getX() {
+        int k = pasosSinConsolidar();
+        return k > 0 ? rutaActual.get(pasoActual + k - 1).x : x;
+    }
+    public int getY() {
+        int k = pasosSinConsolidar();
+        return k > 0 ? rutaActual.get(pasoActual + k - 1).y : y;
+    }
+    public void setX(int x_aux) { consolidar(); this.x = x_aux; }
+    public void setY(int y_aux) { consolidar(); this.y = y_aux; }
     public int getLibreEn() { return libreEn; }
     public void setLibreEn(int t) { this.libreEn = t; }
     public boolean isEnRetorno() { return enRetorno; }
@@ -152,10 +360,35 @@ public class Camion {
     public void setStatus(TruckStatus s) { this.status = s; }
     public List<Pedido> getRutaPendiente() { return rutaPendiente; }
     public List<Point> getRuta() { return rutaActual; }
-    public List<Point> getHistory() { return history; }
-    public double getConsumoAcumulado() { return consumoAcumulado; }
-    public double getCombustibleGastado() { return combustibleGastado; }
-    public double getCapacidadCombustible() { return capacidadCombustible; }
-    public double getCombustibleDisponible() { return combustibleDisponible; }
-    public void setCombustibleDisponible(double c) { this.combustibleDisponible = c; }
+    /** Recorrido histórico completo (solo lectura si hay tramos congelados). */
+    public List<Point> getHistory() {
+        if (largoCongelado == 0) return history;
+        final List<List<Point>> tramos = historiaCongelada;
+        final List<Point> propio = history;
+        final int largo = largoCongelado + propio.size();
+        return new AbstractList<Point>() {
+            @Override
+            public Point get(int i) {
+                if (i < 0 || i >= largo) throw new IndexOutOfBoundsException("Índice: " + i);
+                for (List<Point> t : tramos) {
+                    if (i < t.size()) return t.get(i);
+                    i -= t.size();
+                }
+                return propio.get(i);
+            }
+
+            @Override
+            public int size() {
+                return largo;
+            }
+        };
+    }
+    public double getConsumoAcumulado() { return Volumen.aGalones(consumoAcumulado + pasosSinConsolidar() * gastoPorPaso()); }
+    public double getCombustibleGastado() { return Volumen.aGalones(combustibleGastado + pasosSinConsolidar() * gastoPorPaso()); }
+    public double getCapacidadCombustible() { return Volumen.aGalones(capacidadCombustible); }
+    public double getCombustibleDisponible() { return Volumen.aGalones(getCombustibleFijo()); }
+    public void setCombustibleDisponible(double c) { setCombustibleFijo(Volumen.deGalones(c)); }
+    long getCapacidadCombustibleFijo() { return capacidadCombustible; }
+    long getCombustibleFijo() { return combustibleDisponible - pasosSinConsolidar() * gastoPorPaso(); }
+    void setCombustibleFijo(long c) { consolidar(); this.combustibleDisponible = c; }
 }
\ No newline at end of file
@@ -0,0 +1,150 @@
+package core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Control de admisión delante del solver: los pedidos liberados esperan en una cola de
+ * cubetas por minuto de fecha límite (EDF) y en cada replanificación solo se admiten los
+ * K más urgentes, más todos los que tienen {@link #HOLGURA_FORZADA} min de holgura o menos.
+ * El resto queda diferido a replanificaciones posteriores.
+ *
+ * K se adapta a la latencia medida del solver: baja si la replanificación supera
+ * la latencia objetivo ({@link #setLatenciaObjetivo}) y sube mientras sobre margen y haya
+ * pedidos diferidos.
+ */
+class ColaAdmision {
+    static final int HOLGURA_FORZADA = 60;        // min: siempre candidatos (igual que en 5.3)
+    static final long LATENCIA_OBJETIVO_MS = 50;   // por defecto
+    static final int K_MIN = 5, K_INICIAL = 40, K_MAX = 400;
+
+    private final ArrayList<ArrayDeque<Pedido>> cubetas = new ArrayList<>();  // índice = tiempoLimite
+    private int primera = Integer.MAX_VALUE;   // ninguna cubeta anterior tiene pedidos
+    private int enCola = 0;                    // entradas guardadas (incluye las aún no purgadas)
+    private int k = K_INICIAL;
+    private long latenciaObjetivoMs = LATENCIA_OBJETIVO_MS;
+    private boolean limitada;                  // ¿la última admisión dejó pedidos fuera?
+
+    /**
+     * Rellena esta cola (vacía) con las entradas vivas de otra, traducidas por {@code copia};
+     * para una simulación bifurcada.
+     */
+    void copiarDe(ColaAdmision otra, UnaryOperator<Pedido> copia) {
+        for (int idx = otra.primera; idx < otra.cubetas.size(); idx++) {
+            ArrayDeque<Pedido> cubeta = otra.cubetas.get(idx);
+            if (cubeta == null) continue;
+            for (Pedido p : cubeta) {
+                if (!p.atendido && !p.descartado && !p.programado) agregar(copia.apply(p));
+            }
+        }
+        k = otra.k;
+        latenciaObjetivoMs = otra.latenciaObjetivoMs;
+        limitada = otra.limitada;
+    }
+
+    /** Escribe K y las entradas vivas, en orden de cola, para un punto de control. */
+    void escribir(DataOutput out, ToIntFunction<Pedido> ref) throws IOException {
+        out.writeInt(k);
+        out.writeLong(latenciaObjetivoMs);
+        out.writeBoolean(limitada);
+        List<Pedido> vivas = new ArrayList<>();
+        for (int idx = primera; idx < cubetas.size(); idx++) {
+            ArrayDeque<Pedido> cubeta = cubetas.get(idx);
+            if (cubeta == null) continue;
+            for (Pedido p : cubeta) if (!p.atendido && !p.descartado && !p.programado) vivas.add(p);
+        }
+        out.writeInt(vivas.size());
+        for (Pedido p : vivas) out.writeInt(ref.applyAsInt(p));
+    }
+
+    /** Rellena esta cola (vacía) con lo escrito por {@link #escribir}. */
+    void leer(DataInput in, IntFunction<Pedido> pedido) throws IOException {
+        k = in.readInt();
+        latenciaObjetivoMs = in.readLong();
+        limitada = in.readBoolean();
+        for (int i = in.readInt(); i > 0; i--) agregar(pedido.apply(in.readInt()));
+    }
+
+    void agregar(Pedido p) {
+        int idx = Math.max(0, p.tiempoLimite);
+        while (cubetas.size() <= idx) cubetas.add(null);
+        ArrayDeque<Pedido> cubeta = cubetas.get(idx);
+        if (cubeta == null) cubetas.set(idx, cubeta = new ArrayDeque<>());
+        cubeta.addLast(p);
+        enCola++;
+        primera = Math.min(primera, idx);
+    }
+
+    /**
+     * Devuelve, en orden de fecha límite, los pedidos admitidos para esta replanificación.
+     * Los ya atendidos, descartados o programados se purgan al pasar por ellos; los
+     * admitidos siguen en cola hasta que se programen. La admisión solo cuenta como limitada
+     * si deja fuera algún pedido vivo.
+     */
+    List<Pedido> admitir(int tiempoActual) {
+        List<Pedido> admitidos = new ArrayList<>();
+        int noUrgentes = 0;
+        limitada = false;
+        for (int idx = primera; idx < cubetas.size(); idx++) {
+            ArrayDeque<Pedido> cubeta = cubetas.get(idx);
+            if (cubeta == null || cubeta.isEmpty()) {
+                if (idx == primera) primera++;
+                continue;
+            }
+            boolean urgente = idx - tiempoActual <= HOLGURA_FORZADA;
+            for (Iterator<Pedido> it = cubeta.iterator(); it.hasNext(); ) {
+                Pedido p = it.next();
+                if (p.atendido || p.descartado || p.programado) {
+                    it.remove();
+                    enCola--;
+                    continue;
+                }
+                if (p.enPlanificacion) continue;   // ya va en el plan que calcula el hilo planificador
+                if (!urgente && noUrgentes >= k) {
+                    limitada = true;
+                    return admitidos;
+                }
+                admitidos.add(p);
+                if (!urgente) noUrgentes++;
+            }
+        }
+        return admitidos;
+    }
+
+    /** Ajusta K con la latencia (ms) de la replanificación que acaba de terminar. */
+    void registrarLatencia(long ms) {
+        if (ms > latenciaObjetivoMs) {
+            k = Math.max(K_MIN, k * 3 / 4);
+        } else if (limitada && ms < latenciaObjetivoMs / 2) {
+            k = Math.min(K_MAX, k + k / 4 + 1);
+        }
+    }
+
+    /** Latencia (ms) por replanificación a partir de la cual K baja. */
+    void setLatenciaObjetivo(long ms) {
+        latenciaObjetivoMs = Math.max(1, ms);
+    }
+
+    /** ¿Quedaron pedidos fuera en la última admisión? */
+    boolean hayDiferidos() { return limitada; }
+
+    int getK() { return k; }
+
+    int getEnCola() { return enCola; }
+
+    /** Cota inferior de la fecha límite más próxima en cola (MAX_VALUE si está vacía). */
+    int getPrimerLimite() { return primera; }
+
+    void clear() {
+        cubetas.clear();
+        primera = Integer.MAX_VALUE;
+        enCola = 0;
+        k = K_INICIAL;
+        limitada = false;
+    }
+}
@@ -0,0 +1,229 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Descomposición por regiones para backlogs grandes: los pedidos se agrupan por k-medias
+ * (distancia Manhattan) y cada camión va a la región del centroide más cercano. Cada región
+ * se resuelve con su propio {@link ACOPlanner#ejecutarACO} en un hilo del pool, y al final
+ * una reparación de frontera barata reubica pedidos entre regiones:
+ * <ol>
+ *   <li>los pedidos que su región no pudo atender se insertan en el camión factible de
+ *       cualquier región que menos combustible gaste;</li>
+ *   <li>el último pedido de cada ruta pasa a otro camión si allí cuesta menos.</li>
+ * </ol>
+ */
+class DescomposicionRegiones {
+    static final int PEDIDOS_MIN_POR_REGION = 4;
+    private static final int ITERACIONES_KMEDIAS = 10;
+
+    private final List<List<Integer>> pedidosRegion = new ArrayList<>();
+    private final List<List<Integer>> camionesRegion = new ArrayList<>();
+
+    // --- Estadísticas de la última resolución ---
+    int regionesResueltas, pedidosReubicados;
+
+    private DescomposicionRegiones() { }
+
+    /** Número de regiones que merece la pena usar para ese tamaño de problema (1 = no partir). */
+    static int regionesUtiles(int regionesPedidas, int numPedidos, int numCamiones) {
+        return Math.max(1, Math.min(regionesPedidas,
+                Math.min(numCamiones, numPedidos / PEDIDOS_MIN_POR_REGION)));
+    }
+
+    static DescomposicionRegiones particionar(List<Pedido> pedidos, List<ACOPlanner.CamionEstado> flota, int regiones) {
+        int N = pedidos.size();
+        // Centroides iniciales por punto más lejano: determinista y bien repartido
+        double[] cx = new double[regiones], cy = new double[regiones];
+        cx[0] = pedidos.get(0).x;
+        cy[0] = pedidos.get(0).y;
+        for (int k = 1; k < regiones; k++) {
+            int lejano = 0;
+            double distLejano = -1;
+            for (int i = 0; i < N; i++) {
+                Pedido p = pedidos.get(i);
+                double d = Double.MAX_VALUE;
+                for (int j = 0; j < k; j++) d = Math.min(d, Math.abs(cx[j] - p.x) + Math.abs(cy[j] - p.y));
+                if (d > distLejano) {
+                    distLejano = d;
+                    lejano = i;
+                }
+            }
+            cx[k] = pedidos.get(lejano).x;
+            cy[k] = pedidos.get(lejano).y;
+        }
+
+        int[] regionDe = new int[N];
+        for (int it = 0; it < ITERACIONES_KMEDIAS; it++) {
+            boolean cambio = false;
+            for (int i = 0; i < N; i++) {
+                Pedido p = pedidos.get(i);
+                int k = masCercano(cx, cy, p.x, p.y, null);
+                cambio |= k != regionDe[i];
+                regionDe[i] = k;
+            }
+            if (!cambio && it > 0) break;
+            double[] sx = new double[regiones], sy = new double[regiones];
+            int[] n = new int[regiones];
+            for (int i = 0; i < N; i++) {
+                sx[regionDe[i]] += pedidos.get(i).x;
+                sy[regionDe[i]] += pedidos.get(i).y;
+                n[regionDe[i]]++;
+            }
+            for (int k = 0; k < regiones; k++) {
+                if (n[k] == 0) continue;   // región vacía: conserva su centroide
+                cx[k] = sx[k] / n[k];
+                cy[k] = sy[k] / n[k];
+            }
+        }
+
+        DescomposicionRegiones d = new DescomposicionRegiones();
+        for (int k = 0; k < regiones; k++) {
+            d.pedidosRegion.add(new ArrayList<>());
+            d.camionesRegion.add(new ArrayList<>());
+        }
+        for (int v = 0; v < flota.size(); v++) {
+            ACOPlanner.CamionEstado c = flota.get(v);
+            d.camionesRegion.get(masCercano(cx, cy, c.posX, c.posY, null)).add(v);
+        }
+        // Una región sin camiones cede sus pedidos a la región con camiones más cercana
+        boolean[] conCamiones = new boolean[regiones];
+        for (int k = 0; k < regiones; k++) conCamiones[k] = !d.camionesRegion.get(k).isEmpty();
+        for (int i = 0; i < N; i++) {
+            int k = regionDe[i];
+            if (!conCamiones[k]) k = masCercano(cx, cy, cx[k], cy[k], conCamiones);
+            d.pedidosRegion.get(k).add(i);
+        }
+        return d;
+    }
+
+    private static int masCercano(double[] cx, double[] cy, double x, double y, boolean[] admitidos) {
+        int mejor = -1;
+        double mejorDist = Double.MAX_VALUE;
+        for (int k = 0; k < cx.length; k++) {
+            if (admitidos != null && !admitidos[k]) continue;
+            double d = Math.abs(cx[k] - x) + Math.abs(cy[k] - y);
+            if (d < mejorDist) {
+                mejorDist = d;
+                mejor = k;
+            }
+        }
+        return mejor;
+    }
+
+    /**
+     * Resuelve cada región en paralelo y devuelve una ruta por camión de {@code flota}, con
+     * índices de pedido referidos a {@code pedidos}, ya reparada en las fronteras.
+     */
+    List<ACOPlanner.Ruta> resolver(ACOPlanner planner, List<Pedido> pedidos, List<ACOPlanner.CamionEstado> flota,
+                                   int tiempoActual, ExecutorService ejecutor) {
+        List<Future<List<ACOPlanner.Ruta>>> futuros = new ArrayList<>();
+        List<Integer> regionDeFuturo = new ArrayList<>();
+        for (int k = 0; k < pedidosRegion.size(); k++) {
+            if (pedidosRegion.get(k).isEmpty()) continue;
+            List<Pedido> subPedidos = new ArrayList<>();
+            for (int i : pedidosRegion.get(k)) subPedidos.add(pedidos.get(i));
+            List<ACOPlanner.CamionEstado> subFlota = new ArrayList<>();
+            for (int v : camionesRegion.get(k)) subFlota.add(flota.get(v));
+            Aleatorio flujo = planner.derivarAzar();   // aquí, en orden de región: no en el hilo del pool
+            futuros.add(ejecutor.submit(() -> planner.ejecutarACO(subPedidos, subFlota, tiempoActual, flujo)));
+            regionDeFuturo.add(k);
+        }
+        regionesResueltas = futuros.size();
+
+        // Una ruta por camión; las de cada región traducen sus índices locales a globales
+        Map<Integer, ACOPlanner.Ruta> rutaPorCamion = new HashMap<>();
+        for (int f = 0; f < futuros.size(); f++) {
+            List<Integer> globales = pedidosRegion.get(regionDeFuturo.get(f));
+            List<ACOPlanner.Ruta> rutasRegion;
+            try {
+                rutasRegion = futuros.get(f).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Planificación por regiones interrumpida", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Falló el ACO de una región", e.getCause());
+            }
+            for (ACOPlanner.Ruta r : rutasRegion) {
+                List<Integer> locales = new ArrayList<>(r.pedidos);
+                r.pedidos.clear();
+                for (int idx : locales) r.pedidos.add(globales.get(idx));
+                rutaPorCamion.put(r.estadoCamion.indice, r);
+            }
+        }
+        List<ACOPlanner.Ruta> rutas = new ArrayList<>();
+        for (ACOPlanner.CamionEstado est : flota) {
+            ACOPlanner.Ruta r = rutaPorCamion.get(est.indice);
+            if (r == null) r = reconstruir(est, new ArrayList<>(), pedidos, tiempoActual);
+            rutas.add(r);
+        }
+        pedidosReubicados = repararFronteras(rutas, flota, pedidos, tiempoActual);
+        return rutas;
+    }
+
+    /** Reparación de frontera; devuelve cuántos pedidos cambiaron de camión o se asignaron. */
+    private static int repararFronteras(List<ACOPlanner.Ruta> rutas, List<ACOPlanner.CamionEstado> flota,
+                                        List<Pedido> pedidos, int tiempoActual) {
+        int reubicados = 0;
+        boolean[] asignado = new boolean[pedidos.size()];
+        for (ACOPlanner.Ruta r : rutas) for (int idx : r.pedidos) asignado[idx] = true;
+
+        // 1) Pedidos sin atender en su región, por fecha límite, al camión que menos gaste
+        List<Integer> sueltos = new ArrayList<>();
+        for (int i = 0; i < pedidos.size(); i++) if (!asignado[i]) sueltos.add(i);
+        sueltos.sort(Comparator.comparingInt(i -> pedidos.get(i).tiempoLimite));
+        for (int idx : sueltos) {
+            ACOPlanner.Ruta mejor = masBarata(rutas, null, pedidos.get(idx), tiempoActual, Long.MAX_VALUE);
+            if (mejor != null && ACOPlanner.asignarPedido(mejor, idx, pedidos.get(idx), tiempoActual)) reubicados++;
+        }
+
+        // 2) El último pedido de cada ruta se muda si otro camión lo sirve con menos combustible
+        for (int v = 0; v < rutas.size(); v++) {
+            ACOPlanner.Ruta r = rutas.get(v);
+            if (r.pedidos.isEmpty()) continue;
+            int cola = r.pedidos.get(r.pedidos.size() - 1);
+            ACOPlanner.Ruta sinCola = reconstruir(flota.get(v), r.pedidos.subList(0, r.pedidos.size() - 1),
+                    pedidos, tiempoActual);
+            long gastoActual = r.consumo - sinCola.consumo;
+            ACOPlanner.Ruta mejor = masBarata(rutas, r, pedidos.get(cola), tiempoActual, gastoActual);
+            if (mejor != null && ACOPlanner.asignarPedido(mejor, cola, pedidos.get(cola), tiempoActual)) {
+                rutas.set(v, sinCola);
+                reubicados++;
+            }
+        }
+        return reubicados;
+    }
+
+    private static ACOPlanner.Ruta masBarata(List<ACOPlanner.Ruta> rutas, ACOPlanner.Ruta excluida, Pedido p,
+                                             int tiempoActual, long umbral) {
+        ACOPlanner.Ruta mejor = null;
+        long mejorGasto = umbral;
+        for (ACOPlanner.Ruta r : rutas) {
+            if (r == excluida || !ACOPlanner.esFactible(r.estadoCamion, p, tiempoActual)) continue;
+            long gasto = ACOPlanner.combustibleNecesario(r.estadoCamion, p);
+            if (gasto < mejorGasto) {
+                mejorGasto = gasto;
+                mejor = r;
+            }
+        }
+        return mejor;
+    }
+
+    /** Vuelve a simular una secuencia de pedidos desde el estado inicial del camión. */
+    private static ACOPlanner.Ruta reconstruir(ACOPlanner.CamionEstado inicial, List<Integer> secuencia,
+                                              List<Pedido> pedidos, int tiempoActual) {
+        List<ACOPlanner.CamionEstado> una = new ArrayList<>();
+        una.add(inicial);
+        ACOPlanner.Ruta r = new ACOPlanner.Ruta();
+        r.estadoCamion = ACOPlanner.deepCopyFlota(una).get(0);
+        for (int idx : secuencia) ACOPlanner.asignarPedido(r, idx, pedidos.get(idx), tiempoActual);
+        return r;
+    }
+}
@@ -0,0 +1,10 @@
+package core;
+
+/** Estado de un pedido en su ciclo de vida dentro de la simulación. */
+public enum EstadoPedido {
+    FUTURO,       // aún no ha llegado su minuto de creación
+    PENDIENTE,    // liberado y sin entrega programada
+    PROGRAMADO,   // liberado y con un evento de entrega programado
+    ENTREGADO,    // atendido
+    DESCARTADO    // rechazado (p.ej. menos de 4h de anticipación)
+}
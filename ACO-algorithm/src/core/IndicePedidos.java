@@ -0,0 +1,119 @@
+package core;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Pedidos indexados por {@link EstadoPedido}. Cada estado es una lista doblemente enlazada
+ * intrusiva (los enlaces viven en el propio {@link Pedido}), así que pasar un pedido de un
+ * estado a otro es O(1) y cada consumidor recorre solo los estados que necesita.
+ *
+ * El pedido avisa al índice desde sus setters ({@code setAtendido}, {@code setProgramado},
+ * {@code setDescartado}); la liberación la marca el simulador con {@link #liberar}.
+ */
+public class IndicePedidos {
+    private static final EstadoPedido[] ESTADOS = EstadoPedido.values();
+
+    private final Pedido[] cabeza = new Pedido[ESTADOS.length];
+    private final Pedido[] cola = new Pedido[ESTADOS.length];
+    private final int[] tamanos = new int[ESTADOS.length];
+
+    /** Indexa estos pedidos según sus marcas actuales (sustituye a los anteriores). */
+    void indexar(Collection<Pedido> pedidos) {
+        for (EstadoPedido e : ESTADOS) {
+            for (Pedido p = cabeza[e.ordinal()], sig; p != null; p = sig) {
+                sig = p.siguiente;
+                p.anterior = p.siguiente = null;
+                p.indice = null;
+            }
+            cabeza[e.ordinal()] = cola[e.ordinal()] = null;
+            tamanos[e.ordinal()] = 0;
+        }
+        for (Pedido p : pedidos) {
+            p.indice = this;
+            p.estado = p.estadoSegunMarcas();
+            enlazar(p);
+        }
+    }
+
+    /**
+     * El pedido llega a su minuto de creación y pasa a estar disponible para planificar. Un
+     * pedido que aún no está en este índice (el materializado por una bifurcación) se enlaza.
+     */
+    void liberar(Pedido p) {
+        p.liberado = true;
+        if (p.indice == this) {
+            actualizar(p);
+            return;
+        }
+        p.indice = this;
+        p.estado = p.estadoSegunMarcas();
+        enlazar(p);
+    }
+
+    /** Recoloca el pedido si sus marcas cambiaron de estado. O(1). */
+    void actualizar(Pedido p) {
+        EstadoPedido nuevo = p.estadoSegunMarcas();
+        if (nuevo == p.estado) return;
+        desenlazar(p);
+        p.estado = nuevo;
+        enlazar(p);
+    }
+
+    private void enlazar(Pedido p) {
+        int e = p.estado.ordinal();
+        p.anterior = cola[e];
+        p.siguiente = null;
+        if (cola[e] != null) cola[e].siguiente = p; else cabeza[e] = p;
+        cola[e] = p;
+        tamanos[e]++;
+    }
+
+    private void desenlazar(Pedido p) {
+        int e = p.estado.ordinal();
+        if (p.anterior != null) p.anterior.siguiente = p.siguiente; else cabeza[e] = p.siguiente;
+        if (p.siguiente != null) p.siguiente.anterior = p.anterior; else cola[e] = p.anterior;
+        p.anterior = p.siguiente = null;
+        tamanos[e]--;
+    }
+
+    public int tamano(EstadoPedido estado) {
+        return tamanos[estado.ordinal()];
+    }
+
+    /** Pedidos liberados y aún sin atender: pendientes y programados. */
+    public Iterable<Pedido> liberados() {
+        return en(EstadoPedido.PENDIENTE, EstadoPedido.PROGRAMADO);
+    }
+
+    /**
+     * Recorre los pedidos de los estados dados, en orden de llegada a cada estado. Durante
+     * el recorrido solo puede cambiar de estado el pedido actual.
+     */
+    public Iterable<Pedido> en(EstadoPedido... estados) {
+        return () -> new Iterator<Pedido>() {
+            private int k = 0;
+            private Pedido sig = avanzar(null);
+
+            private Pedido avanzar(Pedido actual) {
+                Pedido p = actual != null ? actual.siguiente : null;
+                while (p == null && k < estados.length) p = cabeza[estados[k++].ordinal()];
+                return p;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return sig != null;
+            }
+
+            @Override
+            public Pedido next() {
+                if (sig == null) throw new NoSuchElementException();
+                Pedido actual = sig;
+                sig = avanzar(actual);
+                return actual;
+            }
+        };
+    }
+}
@@ -0,0 +1,297 @@
+package core;
+
+import java.awt.Point;
+import java.io.BufferedReader;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plantas y tanques intermedios, cargados del fichero de instalaciones:
+ * <pre>PLANTA:x,y
+ * TANQUE:x,y,capacidad m³</pre>
+ * Sin fichero se usa la planta (12,8) y los tanques (30,15) y (50,40) de 160 m³.
+ *
+ * Para el retorno tras cada entrega se precalcula, por época de bloqueos (intervalo en que
+ * el conjunto de bloqueos activos no cambia), la distancia real por la cuadrícula de cada
+ * celda a cada instalación y, por celda, los tanques más cercanos que la planta más cercana,
+ * en orden. Elegir destino es mirar esa lista y el stock de sus tanques.
+ *
+ * Los mapas de época no se modifican una vez calculados (cada época crea arrays nuevos), así
+ * que una simulación bifurcada los comparte; solo copia el libro de los tanques.
+ */
+public class Instalaciones {
+    static final int ANCHO = 70, ALTO = 50;
+    private static final int INALCANZABLE = Integer.MAX_VALUE;
+
+    private final List<Point> plantas = new ArrayList<>();
+    private final List<Tanque> tanques = new ArrayList<>();
+
+    // --- Mapa de la época de bloqueos calculada ---
+    private List<Bloqueo> bloqueos = Collections.emptyList();
+    private int[] limitesEpoca = new int[0];   // minutos en que empieza o termina algún bloqueo
+    private int epocaCalculada = -1;
+    private int[][] dist;                      // dist[f][celda]; f < plantas.size() son plantas
+    private int[] inicioCandidatos;            // candidatos de la celda c: [inicio[c], inicio[c+1])
+    private int[] candidatos;
+
+    public static Instalaciones cargar(String archivo) {
+        Instalaciones inst = new Instalaciones();
+        try (BufferedReader br = new BufferedReader(new FileReader(archivo))) {
+            String linea;
+            while ((linea = br.readLine()) != null) {
+                linea = linea.trim();
+                if (linea.isEmpty() || linea.startsWith("#")) continue;
+                try {
+                    String[] partes = linea.split(":", 2);
+                    String[] datos = partes[1].split(",");
+                    int x = Integer.parseInt(datos[0].trim());
+                    int y = Integer.parseInt(datos[1].trim());
+                    if (partes[0].trim().equals("PLANTA")) inst.plantas.add(new Point(x, y));
+                    else if (partes[0].trim().equals("TANQUE"))
+                        inst.tanques.add(new Tanque(x, y, Double.parseDouble(datos[2].trim())));
+                    else throw new IllegalArgumentException(partes[0]);
+                } catch (Exception e) {
+                    System.out.println("❌ Error en línea de instalaciones: " + linea);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("⚠️ No se pudo leer " + archivo + ", se usan las instalaciones por defecto");
+        }
+        return inst.plantas.isEmpty() ? porDefecto() : inst;
+    }
+
+    public static Instalaciones porDefecto() {
+        Instalaciones inst = new Instalaciones();
+        inst.plantas.add(new Point(12, 8));
+        inst.tanques.add(new Tanque(30, 15, 160));
+        inst.tanques.add(new Tanque(50, 40, 160));
+        return inst;
+    }
+
+    /** Copia para una simulación bifurcada: tanques copiados ({@link Tanque#bifurcar}) y mapas compartidos. */
+    Instalaciones bifurcar(Map<Tanque.Reserva, Tanque.Reserva> reservas) {
+        Instalaciones inst = new Instalaciones();
+        inst.plantas.addAll(plantas);
+        for (Tanque tq : tanques) inst.tanques.add(tq.bifurcar(reservas));
+        inst.bloqueos = bloqueos;
+        inst.limitesEpoca = limitesEpoca;
+        inst.epocaCalculada = epocaCalculada;
+        inst.dist = dist;
+        inst.inicioCandidatos = inicioCandidatos;
+        inst.candidatos = candidatos;
+        return inst;
+    }
+
+    /** Escribe plantas y tanques (con su libro) para un punto de control; los mapas se recalculan. */
+    void escribir(DataOutput out) throws IOException {
+        out.writeInt(plantas.size());
+        for (Point p : plantas) {
+            out.writeInt(p.x);
+            out.writeInt(p.y);
+        }
+        out.writeInt(tanques.size());
+        for (Tanque tq : tanques) tq.escribir(out);
+    }
+
+    static Instalaciones leer(DataInput in) throws IOException {
+        Instalaciones inst = new Instalaciones();
+        for (int i = in.readInt(); i > 0; i--) inst.plantas.add(new Point(in.readInt(), in.readInt()));
+        for (int i = in.readInt(); i > 0; i--) inst.tanques.add(Tanque.leer(in));
+        return inst;
+    }
+
+    /** Bloqueos con los que se calculan los mapas; invalida el mapa ya calculado. */
+    void usarBloqueos(List<Bloqueo> bloqueos) {
+        this.bloqueos = bloqueos;
+        int[] limites = new int[2 * bloqueos.size()];
+        for (int i = 0; i < bloqueos.size(); i++) {
+            limites[2 * i] = bloqueos.get(i).getStartMin();
+            limites[2 * i + 1] = bloqueos.get(i).getEndMin();
+        }
+        Arrays.sort(limites);
+        int n = 0;
+        for (int i = 0; i < limites.length; i++) {
+            if (n == 0 || limites[i] != limites[n - 1]) limites[n++] = limites[i];
+        }
+        this.limitesEpoca = Arrays.copyOf(limites, n);
+        this.epocaCalculada = -1;
+    }
+
+    /**
+     * Tanques llenos y sin reservas, para empezar otra simulación con estos bloqueos; si son
+     * los mismos, los mapas de época ya calculados se conservan.
+     */
+    void reiniciar(List<Bloqueo> bloqueos) {
+        for (Tanque tq : tanques) tq.reiniciar();
+        if (bloqueos != this.bloqueos) usarBloqueos(bloqueos);
+    }
+
+    /** Vuelve a llenar todos los tanques intermedios. */
+    void recargarTanques() {
+        for (Tanque tq : tanques) tq.recargar();
+    }
+
+    /**
+     * Instalación donde recargar al volver desde (x,y) en el minuto t: el tanque más cercano
+     * con stock para {@code falta} (punto fijo) si está más cerca que la planta más cercana; si no, esa planta.
+     */
+    int elegirRetorno(int x, int y, long falta, int t) {
+        prepararEpoca(t);
+        if (!dentro(x, y)) return elegirPorManhattan(x, y, falta);
+        int c = celda(x, y);
+        for (int k = inicioCandidatos[c]; k < inicioCandidatos[c + 1]; k++) {
+            int f = candidatos[k];
+            if (f < plantas.size() || tanques.get(f - plantas.size()).cabe(falta)) return f;
+        }
+        return 0;   // sin candidatos alcanzables: a la planta principal
+    }
+
+    /** Distancia por la cuadrícula en la época ya preparada (Manhattan si no hay camino). */
+    int distancia(int f, int x, int y) {
+        int d = dentro(x, y) ? dist[f][celda(x, y)] : INALCANZABLE;
+        return d != INALCANZABLE ? d : Math.abs(x - this.x(f)) + Math.abs(y - this.y(f));
+    }
+
+    /** Tanque de la instalación f, o null si es una planta. */
+    Tanque tanque(int f) {
+        return f < plantas.size() ? null : tanques.get(f - plantas.size());
+    }
+
+    int x(int f) {
+        return f < plantas.size() ? plantas.get(f).x : tanques.get(f - plantas.size()).x;
+    }
+
+    int y(int f) {
+        return f < plantas.size() ? plantas.get(f).y : tanques.get(f - plantas.size()).y;
+    }
+
+    /** Fuera de la cuadrícula no hay mapa: planta o tanque con stock a menor distancia Manhattan. */
+    private int elegirPorManhattan(int x, int y, long falta) {
+        int mejor = -1, distMin = INALCANZABLE;
+        for (int f = 0; f < plantas.size() + tanques.size(); f++) {
+            if (f >= plantas.size() && !tanques.get(f - plantas.size()).cabe(falta)) continue;
+            int d = Math.abs(x - x(f)) + Math.abs(y - y(f));
+            if (d < distMin) {
+                distMin = d;
+                mejor = f;
+            }
+        }
+        return mejor;
+    }
+
+    private static boolean dentro(int x, int y) {
+        return x >= 0 && x < ANCHO && y >= 0 && y < ALTO;
+    }
+
+    private static int celda(int x, int y) {
+        return y * ANCHO + x;
+    }
+
+    private void prepararEpoca(int t) {
+        int epoca = epocaDe(t);
+        if (epoca == epocaCalculada) return;
+        boolean[] bloqueada = new boolean[ANCHO * ALTO];
+        for (Bloqueo b : bloqueos) {
+            if (!b.isActiveAt(t)) continue;
+            List<Point> nodos = b.getNodes();
+            for (int i = 0; i + 1 < nodos.size(); i++) {
+                Point a = nodos.get(i), c = nodos.get(i + 1);
+                if (a.x == c.x) {
+                    for (int y = Math.min(a.y, c.y); y <= Math.max(a.y, c.y); y++) marcar(bloqueada, a.x, y);
+                } else if (a.y == c.y) {
+                    for (int x = Math.min(a.x, c.x); x <= Math.max(a.x, c.x); x++) marcar(bloqueada, x, a.y);
+                }
+            }
+        }
+        int F = plantas.size() + tanques.size();
+        dist = new int[F][];
+        for (int f = 0; f < F; f++) dist[f] = bfs(x(f), y(f), bloqueada);
+
+        // Por celda: tanques estrictamente más cerca que la planta más cercana, y esa planta
+        int P = plantas.size();
+        inicioCandidatos = new int[ANCHO * ALTO + 1];
+        int[] lista = new int[ANCHO * ALTO * (tanques.size() + 1)];
+        int n = 0;
+        for (int c = 0; c < ANCHO * ALTO; c++) {
+            inicioCandidatos[c] = n;
+            int planta = 0;
+            for (int p = 1; p < P; p++) if (dist[p][c] < dist[planta][c]) planta = p;
+            int desde = n;
+            for (int f = P; f < F; f++) {
+                if (dist[f][c] >= dist[planta][c]) continue;
+                int k = n++;   // inserción ordenada por distancia; empates por orden de fichero
+                while (k > desde && dist[lista[k - 1]][c] > dist[f][c]) {
+                    lista[k] = lista[k - 1];
+                    k--;
+                }
+                lista[k] = f;
+            }
+            lista[n++] = planta;
+        }
+        inicioCandidatos[ANCHO * ALTO] = n;
+        candidatos = Arrays.copyOf(lista, n);
+        epocaCalculada = epoca;
+    }
+
+    private static void marcar(boolean[] bloqueada, int x, int y) {
+        if (dentro(x, y)) bloqueada[celda(x, y)] = true;
+    }
+
+    /** Número de límites de época ≤ t: identifica el conjunto de bloqueos activos en t. */
+    private int epocaDe(int t) {
+        int lo = 0, hi = limitesEpoca.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (limitesEpoca[mid] <= t) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Distancias desde (x,y) por celdas libres. Como en el A*, el destino y el origen del
+     * camión pueden estar bloqueados: una celda bloqueada recibe distancia pero no se atraviesa.
+     */
+    private static int[] bfs(int x, int y, boolean[] bloqueada) {
+        int[] d = new int[ANCHO * ALTO];
+        Arrays.fill(d, INALCANZABLE);
+        if (!dentro(x, y)) return d;
+        int[] cola = new int[ANCHO * ALTO];
+        int cabeza = 0, fin = 0;
+        d[celda(x, y)] = 0;
+        cola[fin++] = celda(x, y);
+        while (cabeza < fin) {
+            int c = cola[cabeza++];
+            int cx = c % ANCHO, cy = c / ANCHO;
+            for (int k = 0; k < 4; k++) {
+                int nx = cx + (k == 0 ? 1 : k == 1 ? -1 : 0);
+                int ny = cy + (k == 2 ? 1 : k == 3 ? -1 : 0);
+                if (nx < 0 || nx >= ANCHO || ny < 0 || ny >= ALTO) continue;
+                int v = celda(nx, ny);
+                if (d[v] != INALCANZABLE) continue;
+                d[v] = d[c] + 1;
+                if (!bloqueada[v]) cola[fin++] = v;
+            }
+        }
+        return d;
+    }
+
+    public List<Point> getPlantas() {
+        return Collections.unmodifiableList(plantas);
+    }
+
+    public Point getPlantaPrincipal() {
+        return plantas.get(0);
+    }
+
+    public List<Tanque> getTanques() {
+        return Collections.unmodifiableList(tanques);
+    }
+}
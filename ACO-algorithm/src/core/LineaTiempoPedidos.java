@@ -0,0 +1,157 @@
+package core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Línea de tiempo de liberación de pedidos, común a {@link ACOPlanner#simularDiaADia} y a la
+ * UI. La ingesta fracciona en una sola pasada los pedidos que no caben en el camión más
+ * grande y aplica el filtro de {@link #ANTICIPACION_MINIMA} min; los admitidos se ordenan por
+ * minuto de creación (ordenación por conteo, estable) en arrays planos con desplazamientos
+ * por minuto. Liberar los pedidos que llegan en t es avanzar un cursor.
+ *
+ * Una simulación bifurcada ({@link #bifurcar}) comparte los arrays con la original y solo
+ * copia cada pedido cuando lo libera.
+ */
+public class LineaTiempoPedidos {
+    static final int ANTICIPACION_MINIMA = 4 * 60;
+
+    private final List<Pedido> pedidos;   // todos tras fraccionar, descartados incluidos, en orden de entrada
+    private final Pedido[] porCreacion;   // admitidos, ordenados por tiempoCreacion
+    private final int[] inicio;           // inicio[m]: primer índice de porCreacion con creación >= m
+    private int cursor = 0;               // porCreacion[0..cursor) ya liberados
+    private final int desde;              // en una bifurcación, cursor al bifurcar; si no, MAX_VALUE
+    private Pedido[] propios;             // copias liberadas por la bifurcación, desde el índice desde
+
+    private LineaTiempoPedidos(List<Pedido> pedidos, Pedido[] porCreacion, int[] inicio, int desde) {
+        this.pedidos = pedidos;
+        this.porCreacion = porCreacion;
+        this.inicio = inicio;
+        this.desde = desde;
+        this.cursor = desde == Integer.MAX_VALUE ? 0 : desde;
+    }
+
+    public static LineaTiempoPedidos ingerir(List<Pedido> originales, double capacidadMaxima) {
+        long maxCapacidad = Volumen.deM3(capacidadMaxima);
+        List<Pedido> pedidos = new ArrayList<>(originales.size());
+        List<Pedido> admitidos = new ArrayList<>(originales.size());
+        int ultimo = 0;
+        for (Pedido p : originales) {
+            // 1) Fraccionar pedidos mayores a la capacidad máxima de la flota
+            int nPartes = maxCapacidad > 0 && p.volumen > maxCapacidad
+                    ? (int) ((p.volumen + maxCapacidad - 1) / maxCapacidad) : 1;
+            long restante = p.volumen;
+            for (int i = 1; i <= nPartes; i++) {
+                Pedido q = p;
+                if (nPartes > 1) {
+                    long parte = Math.min(maxCapacidad, restante);
+                    q = Pedido.conVolumen(p.id * 100 + i, p.tiempoCreacion, p.x, p.y, parte, p.tiempoLimite, p.cliente);
+                    restante -= parte;
+                }
+                pedidos.add(q);
+                // 2) Filtrar pedidos con menos de 4h de anticipación
+                if (q.tiempoLimite - q.tiempoCreacion < ANTICIPACION_MINIMA) {
+                    q.setDescartado(true);
+                    System.out.printf("⚠ Pedido #%d rechazado: menos de 4h de anticipación%n", q.id);
+                } else if (!q.descartado) {
+                    admitidos.add(q);
+                    ultimo = Math.max(ultimo, q.tiempoCreacion);
+                }
+            }
+        }
+
+        // 3) Ordenación por conteo del minuto de creación: inicio[] son los desplazamientos
+        int[] inicio = new int[ultimo + 2];
+        for (Pedido q : admitidos) inicio[Math.max(0, q.tiempoCreacion) + 1]++;
+        for (int m = 1; m < inicio.length; m++) inicio[m] += inicio[m - 1];
+        int[] siguiente = inicio.clone();
+        Pedido[] porCreacion = new Pedido[admitidos.size()];
+        for (Pedido q : admitidos) porCreacion[siguiente[Math.max(0, q.tiempoCreacion)]++] = q;
+        return new LineaTiempoPedidos(Collections.unmodifiableList(pedidos), porCreacion, inicio, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Línea de tiempo para una simulación bifurcada en este punto: mismo cursor y mismos
+     * arrays; los pedidos que libere son copias sin estado de los originales.
+     */
+    LineaTiempoPedidos bifurcar() {
+        return new LineaTiempoPedidos(pedidos, porCreacion, inicio, cursor);
+    }
+
+    /**
+     * Vuelve al estado recién ingerido para repetir la simulación: cursor al principio y
+     * marcas de los pedidos limpias (descartados solo los que la ingesta rechazó). O(pedidos),
+     * sin fraccionar ni ordenar de nuevo.
+     */
+    LineaTiempoPedidos reiniciar() {
+        for (Pedido p : pedidos) p.reiniciar(true);
+        for (Pedido p : porCreacion) p.descartado = false;
+        cursor = 0;
+        return this;
+    }
+
+    /** Escribe el orden de liberación (referencias a pedidos) y el cursor para un punto de control. */
+    void escribir(DataOutput out, ToIntFunction<Pedido> ref) throws IOException {
+        out.writeInt(porCreacion.length);
+        for (Pedido p : porCreacion) out.writeInt(ref.applyAsInt(p));
+        out.writeInt(cursor);
+    }
+
+    /** Línea de tiempo escrita por {@link #escribir}, sobre la lista de pedidos ya ingerida. */
+    static LineaTiempoPedidos leer(DataInput in, List<Pedido> pedidos, IntFunction<Pedido> pedido) throws IOException {
+        Pedido[] porCreacion = new Pedido[in.readInt()];
+        int ultimo = 0;
+        for (int i = 0; i < porCreacion.length; i++) {
+            porCreacion[i] = pedido.apply(in.readInt());
+            ultimo = Math.max(ultimo, porCreacion[i].tiempoCreacion);
+        }
+        int[] inicio = new int[ultimo + 2];
+        for (Pedido q : porCreacion) inicio[Math.max(0, q.tiempoCreacion) + 1]++;
+        for (int m = 1; m < inicio.length; m++) inicio[m] += inicio[m - 1];
+        LineaTiempoPedidos linea = new LineaTiempoPedidos(Collections.unmodifiableList(new ArrayList<>(pedidos)),
+                porCreacion, inicio, Integer.MAX_VALUE);
+        linea.cursor = in.readInt();
+        return linea;
+    }
+
+    /** Todos los pedidos tras fraccionar (los descartados incluidos), tal como se ingirieron. */
+    public List<Pedido> getPedidos() {
+        return pedidos;
+    }
+
+    /**
+     * Libera los pedidos creados hasta el minuto t (inclusive). Devuelve el índice del
+     * primero liberado ahora; los nuevos son {@code [devuelto, getCursor())}.
+     */
+    public int liberarHasta(int tiempoActual) {
+        int primero = cursor;
+        if (tiempoActual >= 0) {
+            int hasta = tiempoActual + 1 < inicio.length ? inicio[tiempoActual + 1] : porCreacion.length;
+            cursor = Math.max(cursor, hasta);
+        }
+        return primero;
+    }
+
+    public Pedido get(int i) {
+        if (i < desde) return porCreacion[i];
+        if (propios == null) propios = new Pedido[porCreacion.length - desde];
+        Pedido p = propios[i - desde];
+        if (p == null) p = propios[i - desde] = porCreacion[i].copiaSinEstado();
+        return p;
+    }
+
+    public int getCursor() {
+        return cursor;
+    }
+
+    /** Número de pedidos admitidos en la línea de tiempo. */
+    public int size() {
+        return porCreacion.length;
+    }
+}
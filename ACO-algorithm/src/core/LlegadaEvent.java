@@ -0,0 +1,15 @@
+package core;
+
+/** Fin programado de un tramo de retorno: el camión llega a la planta o tanque y recarga. */
+public class LlegadaEvent {
+    int time;
+    Camion camion;
+    int tramo;    // tramo del camión al programarla; si cambió, la llegada es obsoleta
+    int orden;    // posición del camión en la flota, para procesar llegadas simultáneas en orden
+    LlegadaEvent(int time, Camion camion, int tramo, int orden) {
+        this.time = time;
+        this.camion = camion;
+        this.tramo = tramo;
+        this.orden = orden;
+    }
+}
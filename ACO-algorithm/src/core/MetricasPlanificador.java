@@ -0,0 +1,178 @@
+package core;
+
+import java.io.PrintStream;
+
+/**
+ * Contadores acumulados del planificador durante una simulación.
+ * Se imprimen en el reporte final y quedan accesibles para barridos de parámetros.
+ */
+public class MetricasPlanificador {
+    private long replanificaciones;
+    private long disparos;                         // minutos con algún motivo para replanificar
+    private long minutosOmitidos, minutosEvaluados;   // minutos que omiten / ejecutan los pasos 4-5
+    private long paresIniciales, paresReducidos;   // Σ V×N antes / después de la reducción
+    private long pedidosForzados, camionesDominados;
+    private long filasCamion, filasClase;         // Σ camiones / Σ clases que ve el ACO
+    private long pedidosCandidatos, paradas;      // Σ candidatos / Σ paradas tras agruparlos
+    private long ejecucionesACO, semillasSuperadas;
+    private long hormigas, hormigasAbandonadas;   // abandonadas por cota frente al incumbente
+    private long consultasTabla, aciertosTabla, desalojosTabla;
+    private long consultasCache, aciertosCache;
+    private long planesPorRegiones, regionesResueltas, pedidosReubicados;
+    private long pedidosAdmitidos, replanesConDiferidos;
+    private long planesAsincronos, pedidosObsoletos;
+    private int kAdmision;
+
+    synchronized void registrarDisparo() {
+        disparos++;
+    }
+
+    synchronized void registrarMinutoOmitido() {
+        minutosOmitidos++;
+    }
+
+    synchronized void registrarMinutoEvaluado() {
+        minutosEvaluados++;
+    }
+
+    synchronized void registrarReduccion(ReduccionProblema red) {
+        replanificaciones++;
+        paresIniciales += red.paresIniciales();
+        paresReducidos += red.paresReducidos();
+        pedidosForzados += red.pedidosForzados;
+        camionesDominados += red.camionesDominados;
+    }
+
+    synchronized void registrarParadas(int pedidos, int paradas) {
+        pedidosCandidatos += pedidos;
+        this.paradas += paradas;
+    }
+
+    synchronized void registrarSemilla(boolean superada) {
+        ejecucionesACO++;
+        if (superada) semillasSuperadas++;
+    }
+
+    synchronized void registrarHormigas(long lanzadas, long abandonadas) {
+        hormigas += lanzadas;
+        hormigasAbandonadas += abandonadas;
+    }
+
+    synchronized void registrarTransposicion(long consultas, long aciertos, long desalojos) {
+        consultasTabla += consultas;
+        aciertosTabla += aciertos;
+        desalojosTabla += desalojos;
+    }
+
+    synchronized void registrarRegiones(int regiones, int reubicados) {
+        planesPorRegiones++;
+        regionesResueltas += regiones;
+        pedidosReubicados += reubicados;
+    }
+
+    synchronized void registrarCachePlanes(boolean acierto) {
+        consultasCache++;
+        if (acierto) aciertosCache++;
+    }
+
+    synchronized void registrarAdmision(int admitidos, boolean conDiferidos, int k) {
+        pedidosAdmitidos += admitidos;
+        if (conDiferidos) replanesConDiferidos++;
+        kAdmision = k;
+    }
+
+    synchronized void registrarPlanAsincrono(int obsoletos) {
+        planesAsincronos++;
+        pedidosObsoletos += obsoletos;
+    }
+
+    synchronized void registrarClases(int camiones, int clases) {
+        filasCamion += camiones;
+        filasClase += clases;
+    }
+
+    public synchronized void reset() {
+        replanificaciones = 0;
+        disparos = 0;
+        minutosOmitidos = minutosEvaluados = 0;
+        paresIniciales = paresReducidos = 0;
+        pedidosForzados = camionesDominados = 0;
+        filasCamion = filasClase = 0;
+        pedidosCandidatos = paradas = 0;
+        ejecucionesACO = semillasSuperadas = 0;
+        hormigas = hormigasAbandonadas = 0;
+        consultasTabla = aciertosTabla = desalojosTabla = 0;
+        consultasCache = aciertosCache = 0;
+        planesPorRegiones = regionesResueltas = pedidosReubicados = 0;
+        pedidosAdmitidos = replanesConDiferidos = 0;
+        planesAsincronos = pedidosObsoletos = 0;
+        kAdmision = 0;
+    }
+
+    public synchronized long getReplanificaciones() { return replanificaciones; }
+    public synchronized long getDisparos()          { return disparos; }
+    public synchronized long getMinutosOmitidos()   { return minutosOmitidos; }
+    public synchronized long getParesIniciales()    { return paresIniciales; }
+    public synchronized long getParesReducidos()    { return paresReducidos; }
+    public synchronized long getPedidosForzados()   { return pedidosForzados; }
+    public synchronized long getCamionesDominados() { return camionesDominados; }
+    public synchronized long getFilasCamion()       { return filasCamion; }
+    public synchronized long getFilasClase()        { return filasClase; }
+    public synchronized long getPedidosCandidatos() { return pedidosCandidatos; }
+    public synchronized long getParadas()           { return paradas; }
+    public synchronized long getEjecucionesACO()    { return ejecucionesACO; }
+    public synchronized long getSemillasSuperadas() { return semillasSuperadas; }
+    public synchronized long getHormigas()          { return hormigas; }
+    public synchronized long getHormigasAbandonadas() { return hormigasAbandonadas; }
+    public synchronized long getConsultasTabla()    { return consultasTabla; }
+    public synchronized long getAciertosTabla()     { return aciertosTabla; }
+    public synchronized long getConsultasCache()    { return consultasCache; }
+    public synchronized long getAciertosCache()     { return aciertosCache; }
+    public synchronized long getPlanesPorRegiones() { return planesPorRegiones; }
+    public synchronized long getPedidosReubicados() { return pedidosReubicados; }
+    public synchronized long getDesalojosTabla()    { return desalojosTabla; }
+    public synchronized long getPedidosAdmitidos()  { return pedidosAdmitidos; }
+    public synchronized long getReplanesConDiferidos() { return replanesConDiferidos; }
+    public synchronized int getKAdmision()          { return kAdmision; }
+    public synchronized long getPlanesAsincronos()  { return planesAsincronos; }
+    public synchronized long getPedidosObsoletos()  { return pedidosObsoletos; }
+
+    /** Tasa de aciertos de la tabla de transposición de rutas parciales. */
+    public synchronized double getTasaAciertosTabla() {
+        return consultasTabla == 0 ? 0 : (double) aciertosTabla / consultasTabla;
+    }
+
+    /** Fracción de V×N eliminada por la reducción, acumulada sobre todas las replanificaciones. */
+    public synchronized double getFraccionReducida() {
+        return paresIniciales == 0 ? 0 : 1.0 - (double) paresReducidos / paresIniciales;
+    }
+
+    /** Líneas de métricas para el reporte final, en el mismo flujo que el resto del reporte. */
+    public synchronized void imprimirReporte(PrintStream salida) {
+        salida.printf("• Replanificaciones: %d (de %d disparos)%n", replanificaciones, disparos);
+        salida.printf("• Minutos sin cambios (pasos 4-5 omitidos): %d de %d%n",
+                minutosOmitidos, minutosOmitidos + minutosEvaluados);
+        salida.printf("• Admisión: %d candidatos admitidos, %d replanificaciones con diferidos, K final=%d%n",
+                pedidosAdmitidos, replanesConDiferidos, kAdmision);
+        if (planesAsincronos > 0) {
+            salida.printf("• Planes asíncronos: %d, %d pedidos obsoletos al aplicar%n",
+                    planesAsincronos, pedidosObsoletos);
+        }
+        salida.printf("• Nodos del ACO: %d pedidos → %d paradas%n", pedidosCandidatos, paradas);
+        salida.printf("• Reducción V×N: %d → %d (-%.1f%%), %d pedidos forzados, %d camiones dominados%n",
+                paresIniciales, paresReducidos, 100 * getFraccionReducida(),
+                pedidosForzados, camionesDominados);
+        salida.printf("• Semilla voraz superada por las hormigas en %d de %d ejecuciones del ACO%n",
+                semillasSuperadas, ejecucionesACO);
+        salida.printf("• Hormigas abandonadas por cota: %d de %d%n", hormigasAbandonadas, hormigas);
+        salida.printf("• Tabla de transposición: %d consultas, %.1f%% aciertos, %d desalojos%n",
+                consultasTabla, 100 * getTasaAciertosTabla(), desalojosTabla);
+        if (planesPorRegiones > 0) {
+            salida.printf("• Descomposición: %d planes en %d regiones, %d pedidos reubicados en fronteras%n",
+                    planesPorRegiones, regionesResueltas, pedidosReubicados);
+        }
+        salida.printf("• Caché de planes: %d aciertos de %d consultas (ACO omitido)%n",
+                aciertosCache, consultasCache);
+        salida.printf("• Filas de feromona: %d camiones → %d clases%n", filasCamion, filasClase);
+    }
+}
@@ -0,0 +1,75 @@
+package core;
+
+import java.util.*;
+
+/**
+ * Parada de entrega: pedidos pendientes con el mismo destino y ventanas compatibles,
+ * que las hormigas tratan como un único nodo: pedidos de distintas solicitudes al mismo
+ * destino cuyo volumen conjunto cabe en un camión. Los trozos de un pedido fraccionado no
+ * se juntan entre sí, porque cada uno ya ocupa la capacidad del camión más grande.
+ * Hereda de {@link Pedido} con volumen total y la fecha límite más temprana del grupo,
+ * de modo que los filtros de factibilidad del ACO valen sin cambios.
+ */
+class Parada extends Pedido {
+    /** Ventana máxima (min) entre fechas límite de pedidos agrupados en la misma parada */
+    static final int VENTANA_COMPATIBLE = 60;
+
+    final List<Integer> miembros = new ArrayList<>();   // índices sobre la lista de candidatos
+
+    private Parada(Pedido primero, int indice) {
+        super(primero.id, primero.tiempoCreacion, primero.x, primero.y,
+                0, primero.tiempoLimite, primero.cliente);
+        volumen = primero.volumen;
+        miembros.add(indice);
+    }
+
+    private void agregar(Pedido p, int indice) {
+        miembros.add(indice);
+        volumen += p.volumen;
+        tiempoCreacion = Math.min(tiempoCreacion, p.tiempoCreacion);
+        if (!Objects.equals(cliente, p.cliente)) cliente = null;
+    }
+
+    /**
+     * Agrupa los candidatos en paradas. Dos pedidos comparten parada si van al mismo (x,y),
+     * sus fechas límite distan como mucho {@link #VENTANA_COMPATIBLE} minutos y el volumen
+     * total cabe en el camión más grande disponible.
+     */
+    static List<Parada> agrupar(List<Pedido> candidatos, long capacidadMax) {
+        List<Integer> orden = new ArrayList<>();
+        for (int i = 0; i < candidatos.size(); i++) orden.add(i);
+        orden.sort(Comparator
+                .comparingInt((Integer i) -> candidatos.get(i).x)
+                .thenComparingInt(i -> candidatos.get(i).y)
+                .thenComparingInt(i -> candidatos.get(i).tiempoLimite));
+
+        List<Parada> paradas = new ArrayList<>();
+        Parada actual = null;
+        for (int i : orden) {
+            Pedido p = candidatos.get(i);
+            boolean compatible = actual != null
+                    && actual.x == p.x && actual.y == p.y
+                    && p.tiempoLimite - actual.tiempoLimite <= VENTANA_COMPATIBLE
+                    && actual.volumen + p.volumen <= capacidadMax;
+            if (compatible) {
+                actual.agregar(p, i);
+            } else {
+                actual = new Parada(p, i);
+                paradas.add(actual);
+            }
+        }
+        return paradas;
+    }
+
+    /**
+     * Expande in situ las rutas calculadas sobre paradas en rutas sobre los
+     * candidatos originales (cada parada se sustituye por sus pedidos).
+     */
+    static void expandir(List<ACOPlanner.Ruta> rutas, List<Parada> paradas) {
+        for (ACOPlanner.Ruta r : rutas) {
+            List<Integer> expandidos = new ArrayList<>();
+            for (int idx : r.pedidos) expandidos.addAll(paradas.get(idx).miembros);
+            r.pedidos = expandidos;
+        }
+    }
+}
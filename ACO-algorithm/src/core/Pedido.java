@@ -2,21 +2,66 @@ package core;
 
 public class Pedido {
     int id, x, y, tiempoCreacion, tiempoLimite;
-    double volumen;
+    long volumen;                 // en punto fijo (ver Volumen)
+    String cliente;               // p.ej. "c-198"; se conserva al fraccionar
     boolean atendido = false;
     boolean descartado = false;
     boolean programado = false;   // ⬅ Nuevo campo
+    boolean enPlanificacion = false;   // candidato de un plan asíncrono aún sin aplicar
+    boolean liberado = false;     // ya llegó su minuto de creación
+
+    // --- Índice por estado (ver IndicePedidos) ---
+    EstadoPedido estado = EstadoPedido.FUTURO;
+    Pedido anterior, siguiente;   // enlaces en la lista de su estado
+    IndicePedidos indice;
 
     public Pedido(int id, int tiempoCreacion, int x, int y, double volumen, int tiempoLimite) {
+        this(id, tiempoCreacion, x, y, volumen, tiempoLimite, null);
+    }
+
+    public Pedido(int id, int tiempoCreacion, int x, int y, double volumen, int tiempoLimite, String cliente) {
         this.id = id; this.tiempoCreacion = tiempoCreacion;
-        this.x = x; this.y = y; this.volumen = volumen;
+        this.x = x; this.y = y; this.volumen = Volumen.deM3(volumen);
         this.tiempoLimite = tiempoLimite;
+        this.cliente = cliente;
+    }
+
+    /** Borra las marcas de una simulación anterior; el índice lo vuelve a enlazar al indexar. */
+    void reiniciar(boolean descartado) {
+        this.atendido = false;
+        this.descartado = descartado;
+        this.programado = false;
+        this.enPlanificacion = false;
+        this.liberado = false;
+    }
+
+    /** Copia tal como se creó (sin marcas ni enlaces), para liberarla en una simulación bifurcada. */
+    Pedido copiaSinEstado() {
+        return conVolumen(id, tiempoCreacion, x, y, volumen, tiempoLimite, cliente);
+    }
+
+    /** Pedido con el volumen ya en punto fijo. */
+    static Pedido conVolumen(int id, int tiempoCreacion, int x, int y, long volumen, int tiempoLimite, String cliente) {
+        Pedido p = new Pedido(id, tiempoCreacion, x, y, 0, tiempoLimite, cliente);
+        p.volumen = volumen;
+        return p;
+    }
+
+    /** Copia con las mismas marcas y sin enlaces; el índice de la bifurcación la enlaza. */
+    Pedido copia() {
+        Pedido c = copiaSinEstado();
+        c.atendido = atendido;
+        c.descartado = descartado;
+        c.programado = programado;
+        c.liberado = liberado;
+        return c;
     }
     // → getters para la tabla de pedidos:
     public int getId() { return id; }
     public int getX() { return x; }
     public int getY() { return y; }
-    public double getVolumen() { return volumen; }
+    public String getCliente() { return cliente; }
+    public double getVolumen() { return Volumen.aM3(volumen); }
     public int getTiempoLimite() { return tiempoLimite; }
     public boolean isAtendido() { return atendido; }
     public boolean isDescartado() {
@@ -26,7 +71,25 @@ public class Pedido {
     public void setTiempoCreacion(int tc) {this.tiempoCreacion = tc; }
     public void setDescartado(boolean descartado) {
         this.descartado = descartado;
+        if (indice != null) indice.actualizar(this);
     }
     // → marcar como atendido:
-    public void setAtendido(boolean a) { this.atendido = a; }
+    public void setAtendido(boolean a) {
+        this.atendido = a;
+        if (indice != null) indice.actualizar(this);
+    }
+    public boolean isProgramado() { return programado; }
+    public void setProgramado(boolean p) {
+        this.programado = p;
+        if (indice != null) indice.actualizar(this);
+    }
+    public EstadoPedido getEstado() { return estado; }
+
+    /** Estado que corresponde a las marcas actuales del pedido. */
+    EstadoPedido estadoSegunMarcas() {
+        if (descartado) return EstadoPedido.DESCARTADO;
+        if (atendido) return EstadoPedido.ENTREGADO;
+        if (programado) return EstadoPedido.PROGRAMADO;
+        return liberado ? EstadoPedido.PENDIENTE : EstadoPedido.FUTURO;
+    }
 }
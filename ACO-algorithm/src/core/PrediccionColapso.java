@@ -0,0 +1,140 @@
+package core;
+
+import java.awt.Point;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Predicción temprana de colapso: en cada replanificación se acota por debajo la llegada de
+ * cada pedido sin entrega programada, con cada camión por separado y sin contar el resto de
+ * pedidos. Si ningún camión puede llegar antes del límite, el colapso ya es seguro aunque
+ * la simulación tarde en verlo; con {@link #setAbortar} la simulación se detiene ahí.
+ *
+ * Entre replanificaciones la cota solo crece con el reloj (como mucho 2 min por minuto
+ * mientras nada cambia), así que también se revisa en el primer minuto en que la menor
+ * holgura vista podría agotarse ({@link #tocaRevisar}).
+ *
+ * La cota solo usa lo que el planificador no puede mejorar: un camión disponible, parado y
+ * con carga suficiente sale de donde está a 50 km/h ({@link ACOPlanner#tiempoViaje}). Los
+ * demás solo vuelven a recibir pedidos tras pasar por una planta o tanque, y hasta allí
+ * avanzan como mucho una celda por minuto: no llegan antes de t + distancia a la instalación
+ * + viaje desde ella. Los caminos son Manhattan sin bloqueos, que nunca son más largos.
+ */
+class PrediccionColapso {
+    private boolean abortar = false;
+    private int previstoEn = -1;     // minuto del colapso previsto (límite + 1), -1 si no hay
+    private int detectadoEn = -1;    // replanificación en que se predijo
+    private int pedidoId = -1;       // pedido inalcanzable de límite más próximo
+    private int llegadaMinima = -1;  // cota de su llegada (Integer.MAX_VALUE: ningún camión cabe)
+    private int revisarEn = Integer.MIN_VALUE;   // próximo minuto sin replanificación en que revisar
+
+    void setAbortar(boolean abortar) {
+        this.abortar = abortar;
+    }
+
+    /** Hay colapso previsto y se pidió abortar. */
+    boolean debeAbortar() {
+        return abortar && previstoEn >= 0;
+    }
+
+    /** Sin predicción aún, toca revisar en un minuto sin replanificación. */
+    boolean tocaRevisar(int t) {
+        return previstoEn < 0 && t >= revisarEn;
+    }
+
+    /**
+     * Revisa los pedidos sin entrega programada en el minuto t. Devuelve true si es la
+     * primera vez que alguno resulta inalcanzable (la predicción no cambia después).
+     */
+    boolean evaluar(Iterable<Pedido> pendientes, List<Camion> flota, Instalaciones instalaciones, int t) {
+        if (previstoEn >= 0) return false;
+        List<Point> recargas = new ArrayList<>(instalaciones.getPlantas());
+        for (Tanque tq : instalaciones.getTanques()) recargas.add(new Point(tq.x, tq.y));
+        int V = flota.size();
+        int[] x = new int[V], y = new int[V];
+        boolean[] parado = new boolean[V];
+        long[] capacidad = new long[V], disponible = new long[V];
+        for (int v = 0; v < V; v++) {
+            Camion c = flota.get(v);
+            x[v] = c.getX();
+            y[v] = c.getY();
+            parado[v] = c.getStatus() == Camion.TruckStatus.AVAILABLE && !c.tienePasosPendientes();
+            capacidad[v] = c.getCapacidadFijo();
+            disponible[v] = c.getDisponibleFijo();
+        }
+        Pedido peor = null;
+        int llegadaPeor = -1;
+        long holguraMin = Integer.MAX_VALUE;
+        for (Pedido p : pendientes) {
+            if (peor != null && p.tiempoLimite >= peor.tiempoLimite) continue;
+            int llegada = Integer.MAX_VALUE;
+            for (int v = 0; v < V && llegada > p.tiempoLimite; v++) {
+                if (capacidad[v] < p.volumen) continue;
+                if (parado[v] && disponible[v] >= p.volumen) {
+                    llegada = Math.min(llegada, t + ACOPlanner.tiempoViaje(Math.abs(x[v] - p.x) + Math.abs(y[v] - p.y)));
+                    continue;
+                }
+                for (Point f : recargas) {
+                    int hasta = Math.abs(x[v] - f.x) + Math.abs(y[v] - f.y);
+                    llegada = Math.min(llegada, t + hasta + ACOPlanner.tiempoViaje(Math.abs(f.x - p.x) + Math.abs(f.y - p.y)));
+                }
+            }
+            if (llegada > p.tiempoLimite) {
+                peor = p;
+                llegadaPeor = llegada;
+            } else {
+                holguraMin = Math.min(holguraMin, p.tiempoLimite - llegada);
+            }
+        }
+        if (peor == null) {
+            revisarEn = (int) Math.min(Integer.MAX_VALUE, t + holguraMin / 2 + 1);
+            return false;
+        }
+        previstoEn = peor.tiempoLimite + 1;
+        detectadoEn = t;
+        pedidoId = peor.id;
+        llegadaMinima = llegadaPeor;
+        return true;
+    }
+
+    int getPrevistoEn() { return previstoEn; }
+    int getDetectadoEn() { return detectadoEn; }
+    int getPedidoId() { return pedidoId; }
+    int getLlegadaMinima() { return llegadaMinima; }
+
+    /** Olvida la predicción (nueva simulación); la opción de abortar se conserva. */
+    void reiniciar() {
+        previstoEn = detectadoEn = pedidoId = llegadaMinima = -1;
+        revisarEn = Integer.MIN_VALUE;
+    }
+
+    void copiarDe(PrediccionColapso otra) {
+        abortar = otra.abortar;
+        previstoEn = otra.previstoEn;
+        detectadoEn = otra.detectadoEn;
+        pedidoId = otra.pedidoId;
+        llegadaMinima = otra.llegadaMinima;
+        revisarEn = otra.revisarEn;
+    }
+
+    void escribir(DataOutput out) throws IOException {
+        out.writeBoolean(abortar);
+        out.writeInt(previstoEn);
+        out.writeInt(detectadoEn);
+        out.writeInt(pedidoId);
+        out.writeInt(llegadaMinima);
+        out.writeInt(revisarEn);
+    }
+
+    void leer(DataInput in) throws IOException {
+        abortar = in.readBoolean();
+        previstoEn = in.readInt();
+        detectadoEn = in.readInt();
+        pedidoId = in.readInt();
+        llegadaMinima = in.readInt();
+        revisarEn = in.readInt();
+    }
+}
@@ -0,0 +1,150 @@
+package core;
+
+import java.util.*;
+
+/**
+ * Reducción del problema antes de llamar a {@link ACOPlanner#ejecutarACO}, usando el mismo
+ * criterio de factibilidad que las hormigas (capacidad, ventana de tiempo y combustible):
+ *  1) Asignaciones forzadas: un pedido con un único camión factible se asigna directamente.
+ *  2) Dominancia: se descarta un camión libre si otro del mismo tipo está en la misma posición
+ *     o más cerca de todos los pedidos, con al menos tanta capacidad y combustible y libre antes.
+ *     Solo se descarta si hay tantos dominadores como pedidos, así que nunca faltan camiones.
+ * Las rutas que devuelve el ACO se recombinan con las forzadas vía {@link #combinar}.
+ */
+class ReduccionProblema {
+    final List<Pedido> pedidos = new ArrayList<>();                   // subproblema para el ACO
+    final List<ACOPlanner.CamionEstado> flota = new ArrayList<>();
+    private final List<Integer> indiceOriginal = new ArrayList<>();   // pedidos[i] → índice en candidatos
+    private final Map<Integer, ACOPlanner.Ruta> forzadas = new LinkedHashMap<>();
+
+    // --- Estadísticas de la reducción ---
+    int camionesIniciales, pedidosIniciales;
+    int pedidosForzados, camionesDominados;
+
+    private ReduccionProblema() { }
+
+    static ReduccionProblema reducir(List<? extends Pedido> candidatos,
+                                     List<ACOPlanner.CamionEstado> flotaEstado,
+                                     int tiempoActual) {
+        ReduccionProblema red = new ReduccionProblema();
+        red.camionesIniciales = flotaEstado.size();
+        red.pedidosIniciales = candidatos.size();
+
+        // Trabajamos sobre copias: el estado de la flota del caller no se toca
+        List<ACOPlanner.CamionEstado> estados = ACOPlanner.deepCopyFlota(flotaEstado);
+        List<ACOPlanner.Ruta> rutas = new ArrayList<>();
+        for (ACOPlanner.CamionEstado est : estados) {
+            ACOPlanner.Ruta r = new ACOPlanner.Ruta();
+            r.estadoCamion = est;
+            rutas.add(r);
+        }
+
+        // 1) Asignaciones forzadas, por fecha límite y hasta punto fijo
+        List<Integer> orden = new ArrayList<>();
+        for (int i = 0; i < candidatos.size(); i++) orden.add(i);
+        orden.sort(Comparator.comparingInt(i -> candidatos.get(i).tiempoLimite));
+        boolean[] asignado = new boolean[candidatos.size()];
+        boolean cambio = true;
+        while (cambio) {
+            cambio = false;
+            for (int i : orden) {
+                if (asignado[i]) continue;
+                Pedido p = candidatos.get(i);
+                int unico = -1, factibles = 0;
+                for (int v = 0; v < estados.size() && factibles < 2; v++) {
+                    if (ACOPlanner.esFactible(estados.get(v), p, tiempoActual)) {
+                        factibles++;
+                        unico = v;
+                    }
+                }
+                if (factibles == 1 && ACOPlanner.asignarPedido(rutas.get(unico), i, p, tiempoActual)) {
+                    asignado[i] = true;
+                    red.pedidosForzados++;
+                    red.forzadas.put(estados.get(unico).indice, rutas.get(unico));
+                    cambio = true;
+                }
+            }
+        }
+        for (int i = 0; i < candidatos.size(); i++) {
+            if (!asignado[i]) {
+                red.pedidos.add(candidatos.get(i));
+                red.indiceOriginal.add(i);
+            }
+        }
+
+        // 2) Camiones dominados (solo tiene sentido si quedan pedidos para el ACO)
+        int n = red.pedidos.size();
+        if (n == 0) {
+            red.flota.addAll(estados);
+            return red;
+        }
+        List<ACOPlanner.CamionEstado> ordenados = new ArrayList<>(estados);
+        ordenados.sort(Comparator
+                .comparingInt((ACOPlanner.CamionEstado c) -> c.tiempoLibre)
+                .thenComparingLong(c -> -c.capacidadDisponible)
+                .thenComparingLong(c -> -c.combustibleDisponible));
+        Map<String, List<ACOPlanner.CamionEstado>> conservadosPorTipo = new HashMap<>();
+        Set<ACOPlanner.CamionEstado> conservados = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (ACOPlanner.CamionEstado a : ordenados) {
+            List<ACOPlanner.CamionEstado> mismoTipo =
+                    conservadosPorTipo.computeIfAbsent(a.tipo, k -> new ArrayList<>());
+            int dominadores = 0;
+            for (ACOPlanner.CamionEstado b : mismoTipo) {
+                if (domina(b, a, red.pedidos) && ++dominadores >= n) break;
+            }
+            if (dominadores >= n) {
+                red.camionesDominados++;
+            } else {
+                mismoTipo.add(a);
+                conservados.add(a);
+            }
+        }
+        // se mantiene el orden original de la flota
+        for (ACOPlanner.CamionEstado est : estados) {
+            if (conservados.contains(est)) red.flota.add(est);
+        }
+        return red;
+    }
+
+    /** ¿El camión b domina al camión a respecto a los pedidos dados? */
+    private static boolean domina(ACOPlanner.CamionEstado b, ACOPlanner.CamionEstado a, List<Pedido> pedidos) {
+        if (!Objects.equals(a.tipo, b.tipo)) return false;
+        if (b.tiempoLibre > a.tiempoLibre) return false;
+        if (b.capacidadDisponible < a.capacidadDisponible) return false;
+        if (b.combustibleDisponible < a.combustibleDisponible) return false;
+        if (b.posX == a.posX && b.posY == a.posY) return true;
+        for (Pedido p : pedidos) {
+            int db = Math.abs(b.posX - p.x) + Math.abs(b.posY - p.y);
+            int da = Math.abs(a.posX - p.x) + Math.abs(a.posY - p.y);
+            if (db > da) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Une las rutas del ACO (índices sobre {@link #pedidos}) con las asignaciones forzadas.
+     * El resultado usa índices sobre la lista de candidatos original.
+     */
+    List<ACOPlanner.Ruta> combinar(List<ACOPlanner.Ruta> rutasACO) {
+        Map<Integer, ACOPlanner.Ruta> porCamion = new LinkedHashMap<>(forzadas);
+        for (ACOPlanner.Ruta r : rutasACO) {
+            ACOPlanner.Ruta destino = porCamion.get(r.estadoCamion.indice);
+            if (destino == null) {
+                destino = new ACOPlanner.Ruta();
+                porCamion.put(r.estadoCamion.indice, destino);
+            }
+            // el ACO partió del estado posterior a las forzadas: sus pedidos van detrás
+            destino.estadoCamion = r.estadoCamion;
+            for (int idx : r.pedidos) destino.pedidos.add(indiceOriginal.get(idx));
+            destino.distancia += r.distancia;
+            destino.consumo += r.consumo;
+        }
+        return new ArrayList<>(porCamion.values());
+    }
+
+    /** Tamaño V×N del problema antes de la reducción. */
+    long paresIniciales() { return (long) camionesIniciales * pedidosIniciales; }
+
+    /** Tamaño V×N del subproblema que resuelve el ACO. */
+    long paresReducidos() { return (long) flota.size() * pedidos.size(); }
+}
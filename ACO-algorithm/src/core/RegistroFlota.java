@@ -0,0 +1,126 @@
+package core;
+
+import java.awt.Point;
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * Registro de la flota: cada camión recibe un índice denso (su posición en el registro) que
+ * usan el estado del planificador, las rutas y las tablas indexadas por camión, y la búsqueda
+ * por id es un acceso a un mapa en vez de recorrer la flota.
+ *
+ * El fichero de flota tiene una línea por tipo de camión:
+ * <pre>tipo:cantidad,capacidad m³,tara kg,combustible gal,base x,base y</pre>
+ * y los ids se numeran por tipo (TA01, TA02, ...). Sin fichero se usa la flota de 20 camiones
+ * con base en la planta principal.
+ */
+public class RegistroFlota {
+    private final List<Camion> camiones = new ArrayList<>();
+    private final Map<String, Integer> indicePorId;
+
+    private RegistroFlota() {
+        this(new HashMap<>());
+    }
+
+    private RegistroFlota(Map<String, Integer> indicePorId) {
+        this.indicePorId = indicePorId;
+    }
+
+    public static RegistroFlota cargar(String archivo, Point planta) {
+        RegistroFlota registro = new RegistroFlota();
+        try (BufferedReader br = new BufferedReader(new FileReader(archivo))) {
+            String linea;
+            while ((linea = br.readLine()) != null) {
+                linea = linea.trim();
+                if (linea.isEmpty() || linea.startsWith("#")) continue;
+                try {
+                    String[] partes = linea.split(":", 2);
+                    String tipo = partes[0].trim();
+                    String[] datos = partes[1].split(",");
+                    registro.agregarTipo(tipo, Integer.parseInt(datos[0].trim()),
+                            Double.parseDouble(datos[1].trim()), Double.parseDouble(datos[2].trim()),
+                            Double.parseDouble(datos[3].trim()),
+                            Integer.parseInt(datos[4].trim()), Integer.parseInt(datos[5].trim()));
+                } catch (Exception e) {
+                    System.out.println("❌ Error en línea de flota: " + linea);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("⚠️ No se pudo leer " + archivo + ", se usa la flota por defecto");
+        }
+        return registro.camiones.isEmpty() ? porDefecto(planta) : registro;
+    }
+
+    /** Flota original: 2 TA, 4 TB, 4 TC y 10 TD con base en la planta dada. */
+    public static RegistroFlota porDefecto(Point planta) {
+        RegistroFlota registro = new RegistroFlota();
+        registro.agregarTipo("TA", 2, 25.0, 7500, 25.0, planta.x, planta.y);
+        registro.agregarTipo("TB", 4, 15.0, 5000, 25.0, planta.x, planta.y);
+        registro.agregarTipo("TC", 4, 10.0, 4000, 25.0, planta.x, planta.y);
+        registro.agregarTipo("TD", 10, 5.0, 3000, 25.0, planta.x, planta.y);
+        return registro;
+    }
+
+    private void agregarTipo(String tipo, int cantidad, double capacidad, double tara, double combustible,
+                             int baseX, int baseY) {
+        int numerados = 0;
+        for (Camion c : camiones) if (c.getTipo().equals(tipo)) numerados++;
+        for (int i = 1; i <= cantidad; i++) {
+            String id = String.format("%s%02d", tipo, numerados + i);
+            Camion c = new Camion(id, capacidad, tara, combustible, baseX, baseY);
+            c.setIndice(camiones.size());
+            indicePorId.put(id, camiones.size());
+            camiones.add(c);
+        }
+    }
+
+    /**
+     * Registro de una simulación bifurcada: cada camión pasa por {@code copiar} y mantiene su
+     * índice; el mapa por id se comparte porque no cambia tras la carga.
+     */
+    RegistroFlota bifurcar(UnaryOperator<Camion> copiar) {
+        RegistroFlota registro = new RegistroFlota(indicePorId);
+        for (Camion c : camiones) registro.camiones.add(copiar.apply(c));
+        return registro;
+    }
+
+    /** Registro con estos camiones ya construidos (p.ej. leídos de un punto de control), en orden de índice. */
+    static RegistroFlota de(List<Camion> camiones) {
+        RegistroFlota registro = new RegistroFlota();
+        for (Camion c : camiones) {
+            registro.indicePorId.put(c.getId(), registro.camiones.size());
+            registro.camiones.add(c);
+        }
+        return registro;
+    }
+
+    public int size() {
+        return camiones.size();
+    }
+
+    public Camion get(int indice) {
+        return camiones.get(indice);
+    }
+
+    /** Índice del camión con ese id, o -1 si no existe. */
+    public int indiceDe(String id) {
+        Integer i = indicePorId.get(id);
+        return i == null ? -1 : i;
+    }
+
+    public Camion buscar(String id) {
+        Integer i = indicePorId.get(id);
+        return i == null ? null : camiones.get(i);
+    }
+
+    public List<Camion> getCamiones() {
+        return Collections.unmodifiableList(camiones);
+    }
+}
@@ -0,0 +1,112 @@
+package core;
+
+/**
+ * Tabla de transposición acotada para {@link ACOPlanner#ejecutarACO}: guarda el estado del
+ * camión tras recorrer una secuencia concreta de pedidos, para que las hormigas que repiten
+ * ese mismo prefijo lo consulten en vez de volver a simular distancia, tiempo y combustible.
+ *
+ * La clave es un hash de 64 bits de (clase de camión, índices de pedido en orden), que se
+ * extiende pedido a pedido. Tabla de dirección directa: una colisión de índice desaloja la
+ * entrada anterior. Cada ejecución del ACO abre una generación nueva, así vaciarla es O(1).
+ */
+class TablaTransposicion {
+    static final int CAPACIDAD_POR_DEFECTO = 1 << 14;
+
+    private final int mascara;
+    private final long[] claves;
+    private final int[] generaciones;
+    private final boolean[] factibles;
+    private final int[] posX, posY, tiempoLibre;
+    private final long[] capacidad, combustible, consumo;   // punto fijo (ver Volumen)
+    private final double[] distancia;
+    private int generacion = 0;
+
+    // --- Estadísticas de la generación actual ---
+    long consultas, aciertos, desalojos;
+
+    TablaTransposicion(int capacidad) {
+        int n = Integer.highestOneBit(Math.max(2, capacidad));
+        this.mascara = n - 1;
+        this.claves = new long[n];
+        this.generaciones = new int[n];
+        this.factibles = new boolean[n];
+        this.posX = new int[n];
+        this.posY = new int[n];
+        this.tiempoLibre = new int[n];
+        this.capacidad = new long[n];
+        this.combustible = new long[n];
+        this.distancia = new double[n];
+        this.consumo = new long[n];
+    }
+
+    /** Invalida todas las entradas (nuevo problema) y pone a cero las estadísticas. */
+    void nuevaGeneracion() {
+        generacion++;
+        consultas = aciertos = desalojos = 0;
+    }
+
+    /** Firma de una ruta vacía del camión de la clase dada. */
+    static long firmaInicial(int clase) {
+        return mezclar(0x632BE59BD9B4E019L + clase);
+    }
+
+    /** Firma de la ruta con firma {@code firma} tras añadirle el pedido {@code pedidoIdx}. */
+    static long extender(long firma, int pedidoIdx) {
+        return mezclar(firma ^ ((pedidoIdx + 1) * 0x9E3779B97F4A7C15L));
+    }
+
+    private static long mezclar(long z) {   // finalizador de splitmix64
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private int ranura(long clave) {
+        return (int) (clave ^ (clave >>> 32)) & mascara;
+    }
+
+    /** Devuelve la ranura con la clave dada o -1 si no está. */
+    int buscar(long clave) {
+        consultas++;
+        int i = ranura(clave);
+        if (generaciones[i] == generacion && claves[i] == clave) {
+            aciertos++;
+            return i;
+        }
+        return -1;
+    }
+
+    boolean esFactible(int ranura) {
+        return factibles[ranura];
+    }
+
+    /** Copia sobre la ruta el estado guardado en la ranura (distancia, consumo y camión). */
+    void restaurar(int ranura, ACOPlanner.Ruta ruta) {
+        ACOPlanner.CamionEstado c = ruta.estadoCamion;
+        c.posX = posX[ranura];
+        c.posY = posY[ranura];
+        c.tiempoLibre = tiempoLibre[ranura];
+        c.capacidadDisponible = capacidad[ranura];
+        c.combustibleDisponible = combustible[ranura];
+        ruta.distancia = distancia[ranura];
+        ruta.consumo = consumo[ranura];
+    }
+
+    /** Guarda el resultado de extender una ruta; {@code ruta == null} marca la extensión como infactible. */
+    void guardar(long clave, ACOPlanner.Ruta ruta) {
+        int i = ranura(clave);
+        if (generaciones[i] == generacion && claves[i] != clave) desalojos++;
+        generaciones[i] = generacion;
+        claves[i] = clave;
+        factibles[i] = ruta != null;
+        if (ruta == null) return;
+        ACOPlanner.CamionEstado c = ruta.estadoCamion;
+        posX[i] = c.posX;
+        posY[i] = c.posY;
+        tiempoLibre[i] = c.tiempoLibre;
+        capacidad[i] = c.capacidadDisponible;
+        combustible[i] = c.combustibleDisponible;
+        distancia[i] = ruta.distancia;
+        consumo[i] = ruta.consumo;
+    }
+}
@@ -1,20 +1,155 @@
 package core;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tanque intermedio con libro de reservas sin bloqueos. El stock va en punto fijo
+ * ({@link Volumen}) y solo cambia por CAS: un camión reserva al salir hacia el tanque, lo
+ * que descuenta del stock libre, y confirma al llegar, lo que consume la reserva. Libre y
+ * reservado van juntos en un solo estado inmutable: cada cambio es un CAS sobre la pareja,
+ * y nunca se ve uno sin el otro.
+ */
 public class Tanque {
     int x, y;
-    double capacidadTotal;
-    double disponible;
+    final long capacidad;                            // en punto fijo
+    private final AtomicReference<Stock> stock;      // libre y reservado, cambiados a la vez
+    private final Queue<Reserva> pendientes = new ConcurrentLinkedQueue<>();
+
+    /** Volumen apartado en un tanque; pasa una sola vez de PENDIENTE a CONFIRMADA (o a LIBERADA al reiniciar). */
+    public static final class Reserva {
+        private static final int PENDIENTE = 0, CONFIRMADA = 1, LIBERADA = 2;
+        final Tanque tanque;
+        final long volumen;
+        private final AtomicInteger estado = new AtomicInteger(PENDIENTE);
+
+        private Reserva(Tanque tanque, long volumen) {
+            this.tanque = tanque;
+            this.volumen = volumen;
+        }
+
+        public Tanque getTanque() { return tanque; }
+        public double getVolumen() { return Volumen.aM3(volumen); }
+    }
+
+    /** Stock sin reservar y reservado por camiones en camino, en punto fijo. */
+    private static final class Stock {
+        final long libre, reservado;
+
+        Stock(long libre, long reservado) {
+            this.libre = libre;
+            this.reservado = reservado;
+        }
+    }
+
     Tanque(int x, int y, double cap) {
+        this(Volumen.deM3(cap), x, y);
+    }
+
+    private Tanque(long capacidad, int x, int y) {
         this.x = x; this.y = y;
-        this.capacidadTotal = cap;
-        this.disponible    = cap;
+        this.capacidad = capacidad;
+        this.stock = new AtomicReference<>(new Stock(capacidad, 0));
+    }
+
+    /**
+     * Copia del libro para una simulación bifurcada: mismo stock y una reserva nueva por
+     * cada pendiente, anotada en {@code reservas} (original → copia). Solo desde el hilo de simulación.
+     */
+    Tanque bifurcar(Map<Reserva, Reserva> reservas) {
+        Tanque t = new Tanque(capacidad, x, y);
+        t.stock.set(stock.get());
+        for (Reserva r : pendientes) {
+            if (r.estado.get() != Reserva.PENDIENTE) continue;
+            Reserva copia = new Reserva(t, r.volumen);
+            t.pendientes.add(copia);
+            reservas.put(r, copia);
+        }
+        return t;
+    }
+
+    /** Reservas aún pendientes, en orden de creación. */
+    List<Reserva> reservasPendientes() {
+        List<Reserva> lista = new ArrayList<>();
+        for (Reserva r : pendientes) if (r.estado.get() == Reserva.PENDIENTE) lista.add(r);
+        return lista;
     }
+
+    /** Escribe el libro para un punto de control: stock y reservas pendientes en orden. */
+    void escribir(DataOutput out) throws IOException {
+        out.writeInt(x);
+        out.writeInt(y);
+        out.writeLong(capacidad);
+        Stock s = stock.get();
+        out.writeLong(s.libre);
+        out.writeLong(s.reservado);
+        List<Reserva> lista = reservasPendientes();
+        out.writeInt(lista.size());
+        for (Reserva r : lista) out.writeLong(r.volumen);
+    }
+
+    static Tanque leer(DataInput in) throws IOException {
+        int x = in.readInt(), y = in.readInt();
+        Tanque t = new Tanque(in.readLong(), x, y);
+        long libre = in.readLong();
+        t.stock.set(new Stock(libre, in.readLong()));
+        for (int i = in.readInt(); i > 0; i--) t.pendientes.add(new Reserva(t, in.readLong()));
+        return t;
+    }
+
+    /** ¿Hay ahora stock libre para reservar v (punto fijo)? */
+    boolean cabe(long v) {
+        return stock.get().libre >= v;
+    }
+
+    /** Aparta v (punto fijo) del stock libre; null si no alcanza. */
+    Reserva reservar(long v) {
+        Stock s;
+        do {
+            s = stock.get();
+            if (s.libre < v) return null;
+        } while (!stock.compareAndSet(s, new Stock(s.libre - v, s.reservado + v)));
+        Reserva r = new Reserva(this, v);
+        pendientes.add(r);
+        return r;
+    }
+
+    /** El camión cargó: la reserva se consume. Devuelve false si ya estaba cerrada. */
+    boolean confirmar(Reserva r) {
+        if (!r.estado.compareAndSet(Reserva.PENDIENTE, Reserva.CONFIRMADA)) return false;
+        stock.updateAndGet(s -> new Stock(s.libre, s.reservado - r.volumen));
+        pendientes.remove(r);
+        return true;
+    }
+
+    /**
+     * Recarga diaria: el tanque vuelve a estar lleno y las reservas pendientes siguen
+     * apartadas, aunque se reserve o confirme a la vez.
+     */
+    void recargar() {
+        stock.updateAndGet(s -> new Stock(capacidad - s.reservado, s.reservado));
+    }
+
+    /** Tanque lleno y sin reservas, para empezar otra simulación. */
+    void reiniciar() {
+        for (Reserva r : pendientes) r.estado.set(Reserva.LIBERADA);
+        pendientes.clear();
+        stock.set(new Stock(capacidad, 0));
+    }
+
     // → getters para pintar el mapa:
-    public double getCapacidadTotal() { return capacidadTotal; }
-    public double getDisponible()    { return disponible; }
+    public double getCapacidadTotal() { return Volumen.aM3(capacidad); }
+    /** Stock libre (sin contar lo reservado por camiones en camino). */
+    public double getDisponible()    { return Volumen.aM3(stock.get().libre); }
+    public double getReservado()     { return Volumen.aM3(stock.get().reservado); }
     public int getX()                { return x; }
     public int getY()                { return y; }
-
-    // → cuando recargas o descontas:
-    public void setDisponible(double d) { this.disponible = d; }
 }
@@ -0,0 +1,55 @@
+package core;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Vigilante de plazos: los pedidos sin atender esperan en un montículo por fecha límite y
+ * cada minuto solo se mira la cabeza, en vez de recorrer todos los pedidos.
+ *
+ * Los pedidos atendidos o descartados se retiran de forma perezosa cuando llegan a la
+ * cabeza, así marcar un pedido no necesita avisar al vigilante.
+ *
+ * Solo se vigilan los pedidos ya liberados: la ingesta descarta los de menos de 4h de
+ * anticipación, así que un pedido aún no liberado no puede tener el plazo vencido.
+ */
+class VigiaVencimientos {
+    private final PriorityQueue<Pedido> porLimite =
+            new PriorityQueue<>(Comparator.comparingInt((Pedido p) -> p.tiempoLimite));
+
+    /** Empieza a vigilar los pedidos liberados de esta lista (sustituye a los anteriores). */
+    void vigilar(Collection<Pedido> pedidos) {
+        porLimite.clear();
+        for (Pedido p : pedidos) {
+            if (p.liberado && !p.atendido && !p.descartado) porLimite.add(p);
+        }
+    }
+
+    /** Vigila un pedido recién liberado. */
+    void agregar(Pedido p) {
+        if (!p.atendido && !p.descartado) porLimite.add(p);
+    }
+
+    /** ¿Hay en el minuto t algún pedido sin atender con el plazo ya vencido? */
+    boolean hayVencidos(int tiempoActual) {
+        while (!porLimite.isEmpty()) {
+            Pedido p = porLimite.peek();
+            if (p.atendido || p.descartado) {
+                porLimite.poll();
+                continue;
+            }
+            return tiempoActual > p.tiempoLimite;
+        }
+        return false;
+    }
+
+    /** Pedido sin atender de plazo más próximo (tras {@link #hayVencidos} true, el vencido); null si no hay. */
+    Pedido primero() {
+        return porLimite.peek();
+    }
+
+    int size() {
+        return porLimite.size();
+    }
+}
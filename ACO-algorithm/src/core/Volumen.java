@@ -0,0 +1,32 @@
+package core;
+
+/**
+ * Volúmenes en punto fijo: un long cuenta mililitros (milésimas de litro) de carga o
+ * microgalones de combustible, así que sumas y restas son exactas, no dependen del orden en
+ * que se evalúan y se pueden actualizar con una sola operación atómica. Los double solo
+ * aparecen al leer datos y al mostrarlos.
+ */
+final class Volumen {
+    /** Unidades de punto fijo por m³ (1 m³ = 1000 L = 10^6 mL). */
+    static final long POR_M3 = 1_000_000L;
+    /** Unidades de punto fijo por galón de combustible (microgalones). */
+    static final long POR_GALON = 1_000_000L;
+
+    private Volumen() { }
+
+    static long deM3(double m3) {
+        return Math.round(m3 * POR_M3);
+    }
+
+    static double aM3(long fijo) {
+        return (double) fijo / POR_M3;
+    }
+
+    static long deGalones(double galones) {
+        return Math.round(galones * POR_GALON);
+    }
+
+    static double aGalones(long fijo) {
+        return (double) fijo / POR_GALON;
+    }
+}
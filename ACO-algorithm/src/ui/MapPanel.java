@@ -12,7 +12,7 @@ import java.util.List;
  *   - la cuadrícula (70×50)
  *   - los pedidos pendientes (en rojo)
  *   - los camiones (en azul)
- *   - los tanques intermedios (en naranja)
+ *   - los tanques intermedios (en naranja) y las plantas (en verde)
  */
 public class MapPanel extends JPanel {
     private Camion selectedCamion;
@@ -20,7 +20,6 @@ public class MapPanel extends JPanel {
     private static final int GRID_COLS = 70;
     private static final int GRID_ROWS = 50;
     private static final int CELL_SIZE = 12;   // píxeles por celda (ajusta a tu gusto)
-    final int depositoX = 12, depositoY = 8;
     private List<Bloqueo> bloqueos = Collections.emptyList();
     private int currentTime = 0;
 
@@ -85,21 +84,25 @@ public class MapPanel extends JPanel {
 
         // 5) Dibujar pedidos pendientes en rojo
         g.setColor(Color.RED);
-        for (Pedido p : planner.getPedidos()) {
-            if (!p.isAtendido() && !p.isDescartado()) {
-                int x = p.getX() * cellW;
-                int y = getHeight() - (p.getY() * cellH + cellH);
-                g.fillOval(x, y, cellW, cellH);
-            }
+        for (Pedido p : planner.getIndicePedidos().liberados()) {
+            int x = p.getX() * cellW;
+            int y = getHeight() - (p.getY() * cellH + cellH);
+            g.fillOval(x, y, cellW, cellH);
         }
 
-        // 6) Dibujar tanques intermedios en naranja
+        // 6) Dibujar tanques intermedios en naranja y plantas en verde
         g.setColor(Color.ORANGE);
         for (Tanque t : planner.getTanquesIntermedios()) {
             int x = t.getX() * cellW;
             int y = getHeight() - (t.getY() * cellH + cellH);
             g.drawRect(x, y, cellW, cellH);
         }
+        g.setColor(Color.GREEN.darker());
+        for (Point p : planner.getInstalaciones().getPlantas()) {
+            int x = p.x * cellW;
+            int y = getHeight() - (p.y * cellH + cellH);
+            g.drawRect(x, y, cellW, cellH);
+        }
 
         // 7) Dibujar camiones en azul
         g.setColor(Color.BLUE);
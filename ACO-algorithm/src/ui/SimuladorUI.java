@@ -4,14 +4,13 @@ import core.ACOPlanner;
 import core.Pedido;
 import core.Camion;
 import core.Bloqueo;
+import core.EstadoPedido;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.util.List;
 import java.util.Map;
-import java.util.HashMap;
-import java.util.ArrayList;
 
 /**
  * Interfaz gráfica principal para el simulador GLP.
@@ -38,6 +37,8 @@ public class SimuladorUI extends JFrame {
         this.bloqueos = ACOPlanner.cargarBloqueos("bloqueos.txt");
         this.averias  = ACOPlanner.cargarAverias("averias.txt");
         this.planner  = new ACOPlanner(pedidos, bloqueos, averias);
+        // el ACO corre en segundo plano para que el Timer de Swing no se congele
+        planner.setPlanificacionAsincrona(true);
         this.mapPanel = new MapPanel(planner);
 
         // Configuración básica de la ventana
@@ -91,45 +92,11 @@ public class SimuladorUI extends JFrame {
         // 1) Arranca desde cero
         planner.reset();
 
-        // 2) Fracciona los pedidos grandes
-        double maxCapacidad = planner.getFlota().stream()
-                .mapToDouble(Camion::getCapacidad)
-                .max().orElse(0);
-
-        List<Pedido> originales   = planner.getPedidos();
-        List<Pedido> particionados = new ArrayList<>();
-        for (Pedido p : originales) {
-            if (p.getVolumen() > maxCapacidad) {
-                int nPartes = (int)Math.ceil(p.getVolumen() / maxCapacidad);
-                double restante = p.getVolumen();
-                for (int i = 1; i <= nPartes; i++) {
-                    double parte = Math.min(maxCapacidad, restante);
-                    Pedido sub = new Pedido(
-                            p.getId()*100 + i,
-                            p.getTiempoCreacion(),
-                            p.getX(), p.getY(),
-                            parte,
-                            p.getTiempoLimite()
-                    );
-                    particionados.add(sub);
-                    restante -= parte;
-                }
-            } else {
-                particionados.add(p);
-            }
-        }
-        // Reemplazo la lista interna de pedidos **una sola vez**
-        planner.setPedidos(particionados);
-
-        // 3) Ahora construyo el mapa tiempo→pedidos
-        Map<Integer,List<Pedido>> pedidosPorTiempo = new HashMap<>();
-        for (Pedido p : planner.getPedidos()) {
-            pedidosPorTiempo
-                    .computeIfAbsent(p.getTiempoCreacion(), k -> new ArrayList<>())
-                    .add(p);
-        }
+        // 2) Ingesta: fracciona los pedidos grandes, filtra por anticipación y
+        //    construye la línea de tiempo de liberación (la misma que usa la consola)
+        planner.prepararPedidos();
 
-        // 4) ¡OJO! Ya NO vuelvas a llamar planner.reset() aquí
+        // 3) ¡OJO! Ya NO vuelvas a llamar planner.reset() aquí
 
         // 5) Pre-selecciono un camión para que pinte la ruta inicial (t=0)
         if (!planner.getFlota().isEmpty()) {
@@ -141,7 +108,7 @@ public class SimuladorUI extends JFrame {
         btnEjecutar.setEnabled(false);
         Timer t = new Timer(100, null);
         t.addActionListener(ev -> {
-            int ahora = planner.stepOneMinute(pedidosPorTiempo);
+            int ahora = planner.stepOneMinute();
             onTick(ahora);
             if (planner.isFinished()) {
                 ((Timer)ev.getSource()).stop();
@@ -184,7 +151,9 @@ public class SimuladorUI extends JFrame {
 
         DefaultTableModel mPed = (DefaultTableModel) pedidosTable.getModel();
         mPed.setRowCount(0);
-        for (Pedido p : planner.getPedidos()) {
+        // solo los pedidos ya liberados: los futuros aún no se conocen
+        for (Pedido p : planner.getIndicePedidos().en(
+                EstadoPedido.PENDIENTE, EstadoPedido.PROGRAMADO, EstadoPedido.ENTREGADO)) {
             mPed.addRow(new Object[]{
                     p.getId(),
                     p.getX() + "," + p.getY(),